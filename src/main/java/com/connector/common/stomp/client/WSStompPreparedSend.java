@@ -0,0 +1,70 @@
+package com.connector.common.stomp.client;
+
+import com.connector.common.stomp.client.base.IStompClient;
+import com.connector.common.stomp.constant.StompFrameType;
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.codec.StompFrameEncoder;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompHeaderMap;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+// SEND frame whose command and header lines are encoded once, every send only appends the content-length, the optional
+// receipt, the body and the NUL. Request handlers of the client (and of the subscription / transaction it wraps) are
+// applied once when the template is prepared, so handlers that depend on the body must not be used with it.
+public class WSStompPreparedSend
+{
+    private static final StompFrameEncoder ENCODER = new StompFrameEncoder();
+
+    private final IStompClient<?, ?, ?, WSRawMessage> stompClient;
+    private final byte[]                              encodedHead;
+    private final String                              encodedHeadText;
+
+    private WSStompPreparedSend(IStompClient<?, ?, ?, WSRawMessage> stompClient, StompFrame template)
+    {
+        this.stompClient = stompClient;
+        this.encodedHead = ENCODER.encodeHead(template);
+        this.encodedHeadText = ENCODER.encodeHeadText(template);
+    }
+
+    // The destination is expected to be populated by the client, e.g. a subscription fills in its own destination
+    public static WSStompPreparedSend prepare(IStompClient<?, ?, ?, WSRawMessage> stompClient, Map<String, String> headers, String contentType) throws Throwable
+    {
+        StompFrame template = stompClient.prepareRequest(new StompFrame(new StompHeaderMap(headers), null, StompFrameType.SEND, contentType));
+        Map<String, String> templateHeaders = template.getHeaders() == null ? new StompHeaderMap() : template.getHeaders();
+        // content-length and receipt change with every send
+        templateHeaders.remove(StompHeaders.CONTENT_LENGTH);
+        templateHeaders.remove(StompHeaders.RECEIPT);
+        return new WSStompPreparedSend(stompClient, StompFrame.populateHeaders(templateHeaders, template));
+    }
+
+    public static WSStompPreparedSend prepare(IStompClient<?, ?, ?, WSRawMessage> stompClient, String destination, Map<String, String> headers, String contentType) throws Throwable
+    {
+        StompHeaderMap destinationHeaders = new StompHeaderMap(headers);
+        destinationHeaders.put(StompHeaders.DESTINATION, destination);
+        return prepare(stompClient, destinationHeaders, contentType);
+    }
+
+    public String send(String body, String receiptId) throws Throwable
+    {
+        return stompClient.sendRawMessage(WSRawMessage.text(ENCODER.encodeWithHead(encodedHeadText, body, receiptId)), receiptId);
+    }
+
+    public String send(byte[] body, String receiptId) throws Throwable
+    {
+        return send(body == null ? null : ByteBuffer.wrap(body), receiptId);
+    }
+
+    public String send(ByteBuffer body, String receiptId) throws Throwable
+    {
+        ByteBuffer bodyBuffer = body == null ? null : body.duplicate();
+        return stompClient.sendRawMessage(WSRawMessage.binary(ENCODER.encodeWithHead(encodedHead, bodyBuffer, receiptId)), receiptId);
+    }
+
+    public IStompClient<?, ?, ?, WSRawMessage> getStompClient()
+    {
+        return stompClient;
+    }
+}
@@ -0,0 +1,19 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.internal.model.StompFrame;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+@FunctionalInterface
+public interface IStompAsyncResponseHandler
+{
+    // Completes once the frame is handled, an error nacks the frame
+    Mono<Void> handleStompResponse(StompFrame frame);
+
+    static IStompAsyncResponseHandler fromCompletionStage(Function<StompFrame, ? extends CompletionStage<?>> handler)
+    {
+        return frame -> Mono.fromCompletionStage(() -> handler.apply(frame)).then();
+    }
+}
@@ -0,0 +1,11 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.internal.model.StompFrame;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface IStompBatchResponseHandler
+{
+    Throwable handleStompResponses(List<StompFrame> frames) throws Throwable;
+}
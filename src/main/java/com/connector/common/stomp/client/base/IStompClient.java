@@ -2,10 +2,14 @@ package com.connector.common.stomp.client.base;
 
 import com.connector.common.stomp.constant.StompConnectionStatus;
 import com.connector.common.stomp.constant.StompVersion;
+import com.connector.common.stomp.internal.config.StompPublishConfig;
 import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompPublishConfirm;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 
 public interface IStompClient<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload> extends IStompRequestHandler, IStompDeliverable
@@ -16,8 +20,43 @@ public interface IStompClient<StompConnectConfig, StompDisconnectConfig, StompSe
 
     void sendRawMessage(TransportPayload rawMessage) throws Throwable;
 
+    // Sends an already encoded frame carrying the receipt header, with the receipt registered as sendStompMessage does
+    String sendRawMessage(TransportPayload rawMessage, String receiptId) throws Throwable;
+
+    // Completes once the transport can take more frames without overflowing its outbound queue
+    Mono<Void> awaitWritable();
+
+    // Sends once the transport is writable, so a publisher can be driven without overflowing the outbound queue
+    default Mono<Void> sendStompMessageAsync(StompFrame msg, String receiptId)
+    {
+        return awaitWritable().then(Mono.defer(() -> {
+            try
+            {
+                sendStompMessage(msg, receiptId);
+                return Mono.empty();
+            }
+            catch (Throwable e)
+            {
+                return Mono.error(e);
+            }
+        }));
+    }
+
+    // Sends the frames as they come, with receipts pipelined as configured, and confirms them in order. See StompPublisher
+    default Flux<StompPublishConfirm> sendAll(Publisher<StompFrame> frames, StompPublishConfig publishConfig)
+    {
+        // a publisher keeps the state of one stream, so every subscription gets its own
+        return Flux.defer(() -> new StompPublisher(this, publishConfig == null ? new StompPublishConfig() : publishConfig).publish(frames));
+    }
+
     void registerRequestHandler(IStompRequestHandler requestHandler);
 
+    // Every registered handler is called by disconnectStomp before DISCONNECT is sent, e.g. to flush acks held back
+    void registerDisconnectHandler(IStompDisconnectHandler disconnectHandler);
+
+    // Applies every request handler between this client and the transport, as sendStompMessage would, without sending
+    StompFrame prepareRequest(StompFrame msg) throws Throwable;
+
     void connectStomp(StompConnectConfig stompConnectConfig) throws Throwable;
 
     Mono<StompConnectionStatus> waitConnectionStatus(StompConnectionStatus status);
@@ -37,4 +76,20 @@ public interface IStompClient<StompConnectConfig, StompDisconnectConfig, StompSe
     StompSessionInfo getConnectedSessionInfo();
 
     Mono<StompFrame> waitReceipt(String receiptId) throws Throwable;
+
+    // Fails with a TimeoutException when the receipt does not arrive in time
+    Mono<StompFrame> waitReceipt(String receiptId, Duration timeout) throws Throwable;
+
+    int getPendingReceiptCount();
+
+    // MESSAGE frames of one subscription, routed by subscription id or by destination for STOMP 1.0 subscriptions
+    // without id
+    Flux<StompFrame> registerSubscriptionRoute(String subscriptionId, String destination);
+
+    void deregisterSubscriptionRoute(String subscriptionId, String destination);
+
+    // Frames carrying the transaction header of one transaction
+    Flux<StompFrame> registerTransactionRoute(String transactionId);
+
+    void deregisterTransactionRoute(String transactionId);
 }
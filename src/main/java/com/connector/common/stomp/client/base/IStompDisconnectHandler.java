@@ -0,0 +1,8 @@
+package com.connector.common.stomp.client.base;
+
+@FunctionalInterface
+public interface IStompDisconnectHandler
+{
+    // Called right before DISCONNECT is sent, while the connection can still carry frames
+    void beforeDisconnect() throws Throwable;
+}
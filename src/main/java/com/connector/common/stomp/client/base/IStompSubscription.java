@@ -2,10 +2,13 @@ package com.connector.common.stomp.client.base;
 
 import com.connector.common.stomp.constant.StompAckMode;
 import com.connector.common.stomp.constant.StompSubscriptionStatus;
+import com.connector.common.stomp.internal.config.StompPartitionConfig;
 import com.connector.common.stomp.internal.model.StompFrame;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface IStompSubscription<StompConnectConfig extends IStompConnectConfig, StompDisconnectConfig, StompSessionInfo extends IStompSessionInfo, TransportPayload> extends IStompClient<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload>, IStompDeliverable, IStompRequestHandler
 {
     String getDestination();
@@ -16,8 +19,12 @@ public interface IStompSubscription<StompConnectConfig extends IStompConnectConf
 
     void registerResponseHandler(IStompResponseHandler responseHandler);
 
+    void registerPartitioning(StompPartitionConfig partitionConfig);
+
     boolean ackMessage(StompFrame message) throws Throwable;
 
+    boolean ackMessages(List<StompFrame> messages) throws Throwable;
+
     String subscribe(String receiptId) throws Throwable;
 
     String unsubscribe(String receiptId) throws Throwable;
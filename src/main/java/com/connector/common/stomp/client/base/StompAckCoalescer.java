@@ -0,0 +1,152 @@
+package com.connector.common.stomp.client.base;
+
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// An ACK in client ack mode acknowledges every earlier message of the subscription too, so only the latest ack id has
+// to be sent. Ack ids are held back until maxPendingAcks messages were acked or maxDelay passed since the first of them,
+// whichever comes first. ACKs are sent outside the lock, as sending one may resume deliveries that ack again, and one
+// at a time so they reach the broker in order: an ack id taken while another thread sends is sent by that thread next.
+public class StompAckCoalescer
+{
+    private static final Logger LOGGER = Loggers.getLogger(StompAckCoalescer.class);
+
+    private final int       maxPendingAcks;
+    private final Duration  maxDelay;
+    private final Scheduler timer;
+    private final AckSender ackSender;
+
+    private String     pendingAckId;
+    private int        pendingAcks;
+    private Disposable scheduledFlush;
+    private boolean    sending;
+
+    public StompAckCoalescer(int maxPendingAcks, Duration maxDelay, AckSender ackSender)
+    {
+        this(maxPendingAcks, maxDelay, Schedulers.parallel(), ackSender);
+    }
+
+    public StompAckCoalescer(int maxPendingAcks, Duration maxDelay, Scheduler timer, AckSender ackSender)
+    {
+        if (maxPendingAcks <= 0)
+        {
+            throw new IllegalArgumentException("Max pending acks must be positive: " + maxPendingAcks);
+        }
+        this.maxPendingAcks = maxPendingAcks;
+        this.maxDelay = maxDelay;
+        this.timer = timer;
+        this.ackSender = ackSender;
+    }
+
+    public void ack(String ackId) throws Throwable
+    {
+        synchronized (this)
+        {
+            pendingAckId = ackId;
+            pendingAcks++;
+            if (pendingAcks < maxPendingAcks)
+            {
+                if (scheduledFlush == null && maxDelay != null)
+                {
+                    scheduledFlush = timer.schedule(this::flushQuietly, maxDelay.toNanos(), TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+        }
+        flush();
+    }
+
+    // Sends the latest pending ack id, if any
+    public void flush() throws Throwable
+    {
+        String ackId = takePendingAckId();
+        while (ackId != null)
+        {
+            try
+            {
+                ackSender.sendAck(ackId);
+            }
+            catch (Throwable e)
+            {
+                synchronized (this)
+                {
+                    sending = false;
+                }
+                throw e;
+            }
+            synchronized (this)
+            {
+                ackId = pendingAckId;
+                pendingAckId = null;
+                pendingAcks = 0;
+                sending = ackId != null;
+            }
+        }
+    }
+
+    // Forgets the pending ack id without sending it, once the connection it belongs to is gone
+    public synchronized void clear()
+    {
+        cancelScheduledFlush();
+        pendingAckId = null;
+        pendingAcks = 0;
+    }
+
+    public synchronized int getPendingAcks()
+    {
+        return pendingAcks;
+    }
+
+    // Returns null when nothing is pending or another thread is sending, which then sends the pending ack id too
+    private synchronized String takePendingAckId()
+    {
+        cancelScheduledFlush();
+        if (pendingAckId == null || sending)
+        {
+            return null;
+        }
+        String ackId = pendingAckId;
+        pendingAckId = null;
+        pendingAcks = 0;
+        sending = true;
+        return ackId;
+    }
+
+    private void cancelScheduledFlush()
+    {
+        if (scheduledFlush != null)
+        {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+    }
+
+    private void flushQuietly()
+    {
+        synchronized (this)
+        {
+            scheduledFlush = null;
+        }
+        try
+        {
+            flush();
+        }
+        catch (Throwable e)
+        {
+            // the broker redelivers whatever stayed unacknowledged
+            LOGGER.warn("Delayed flush of coalesced acks failed", e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface AckSender
+    {
+        void sendAck(String ackId) throws Throwable;
+    }
+}
@@ -6,6 +6,7 @@ import com.connector.common.stomp.internal.model.StompFrame;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 
 public abstract class StompClientDelegate<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload> implements IStompClient<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload>
@@ -52,12 +53,30 @@ public abstract class StompClientDelegate<StompConnectConfig, StompDisconnectCon
         delegatee.registerRequestHandler(requestHandler);
     }
 
+    @Override
+    public void registerDisconnectHandler(IStompDisconnectHandler disconnectHandler)
+    {
+        delegatee.registerDisconnectHandler(disconnectHandler);
+    }
+
     @Override
     public String sendStompMessage(StompFrame msg, String receiptId) throws Throwable
     {
         return delegatee.sendStompMessage(populateRequest(msg), receiptId);
     }
 
+    @Override
+    public Mono<Void> awaitWritable()
+    {
+        return delegatee.awaitWritable();
+    }
+
+    @Override
+    public StompFrame prepareRequest(StompFrame msg) throws Throwable
+    {
+        return delegatee.prepareRequest(populateRequest(msg));
+    }
+
     @Override
     public StompFrame populateRequest(StompFrame msg) throws Throwable
     {
@@ -80,6 +99,12 @@ public abstract class StompClientDelegate<StompConnectConfig, StompDisconnectCon
         delegatee.sendRawMessage(rawMessage);
     }
 
+    @Override
+    public String sendRawMessage(TransportPayload rawMessage, String receiptId) throws Throwable
+    {
+        return delegatee.sendRawMessage(rawMessage, receiptId);
+    }
+
     @Override
     public void connectStomp(StompConnectConfig stompConnectConfig) throws Throwable
     {
@@ -134,12 +159,48 @@ public abstract class StompClientDelegate<StompConnectConfig, StompDisconnectCon
         return delegatee.waitReceipt(receiptId);
     }
 
+    @Override
+    public Mono<StompFrame> waitReceipt(String receiptId, Duration timeout) throws Throwable
+    {
+        return delegatee.waitReceipt(receiptId, timeout);
+    }
+
+    @Override
+    public int getPendingReceiptCount()
+    {
+        return delegatee.getPendingReceiptCount();
+    }
+
     @Override
     public Mono<StompConnectionStatus> waitConnectionStatus(StompConnectionStatus status)
     {
         return delegatee.waitConnectionStatus(status);
     }
 
+    @Override
+    public Flux<StompFrame> registerSubscriptionRoute(String subscriptionId, String destination)
+    {
+        return delegatee.registerSubscriptionRoute(subscriptionId, destination);
+    }
+
+    @Override
+    public void deregisterSubscriptionRoute(String subscriptionId, String destination)
+    {
+        delegatee.deregisterSubscriptionRoute(subscriptionId, destination);
+    }
+
+    @Override
+    public Flux<StompFrame> registerTransactionRoute(String transactionId)
+    {
+        return delegatee.registerTransactionRoute(transactionId);
+    }
+
+    @Override
+    public void deregisterTransactionRoute(String transactionId)
+    {
+        delegatee.deregisterTransactionRoute(transactionId);
+    }
+
     public IStompClient<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload> getDelegatee()
     {
         return delegatee;
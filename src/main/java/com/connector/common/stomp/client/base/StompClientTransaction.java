@@ -6,6 +6,7 @@ import com.connector.common.stomp.constant.StompHeaders;
 import com.connector.common.stomp.constant.StompTransactionStatus;
 import com.connector.common.stomp.constant.StompVersion;
 import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompHeaderMap;
 import reactor.core.Disposable;
 import reactor.core.publisher.ConnectableFlux;
 import reactor.core.publisher.Flux;
@@ -14,8 +15,6 @@ import reactor.core.publisher.Sinks;
 import reactor.core.publisher.Sinks.Many;
 
 import java.text.MessageFormat;
-import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class StompClientTransaction<StompConnectConfig extends IStompConnectConfig, StompDisconnectConfig, StompSessionInfo extends IStompSessionInfo, TransportPayload> extends StompClientDelegate<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload> implements IStompTransaction<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload>
@@ -26,13 +25,14 @@ public class StompClientTransaction<StompConnectConfig extends IStompConnectConf
     private StompTransactionStatus transactionStatus;
     private Disposable             deliverMessageDispose;
     private Flux<StompFrame>       messageStream;
+    private Flux<StompFrame>       routedMessageStream;
 
     protected StompClientTransaction(String transactionId, IStompClient<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload> stompClient)
     {
         super(stompClient);
 
         registerWrappedRequestHandler(msg -> {
-            Map<String, String> headers = msg.getHeaders() == null ? new LinkedHashMap<>() : msg.getHeaders();
+            Map<String, String> headers = msg.getHeaders() == null ? new StompHeaderMap() : msg.getHeaders();
             switch (msg.getType())
             {
             case SEND:
@@ -76,7 +76,12 @@ public class StompClientTransaction<StompConnectConfig extends IStompConnectConf
         transactionStatusPublisher.tryEmitNext(StompTransactionStatus.UNINITIALIZED).orThrow();
         transactionStatusStream().subscribe(status -> this.transactionStatus = status);
         getDelegatee().connectionStatusStream().doOnNext(status -> {
-            if (status == StompConnectionStatus.DISCONNECTED && getTransactionStatus() == StompTransactionStatus.IN_PROGRESS)
+            if (status != StompConnectionStatus.DISCONNECTED)
+            {
+                return;
+            }
+            deregisterRoute();
+            if (getTransactionStatus() == StompTransactionStatus.IN_PROGRESS)
             {
                 setTransactionStatus(StompTransactionStatus.ABORTED);
             }
@@ -97,11 +102,22 @@ public class StompClientTransaction<StompConnectConfig extends IStompConnectConf
             return null;
         }
 
-        receiptId = sendStompMessage(populateRequest(new StompFrame(null, null, StompFrameType.BEGIN, null)), receiptId);
+        // Registered before BEGIN is sent so frames of the transaction arriving ahead of the receipt are buffered
+        registerRoute();
+        Mono<StompFrame> receipt = waitReceipt(receiptId);
+        try
+        {
+            receiptId = sendStompMessage(populateRequest(new StompFrame(null, null, StompFrameType.BEGIN, null)), receiptId);
+        }
+        catch (Throwable e)
+        {
+            deregisterRoute();
+            throw e;
+        }
 
         if (receiptId != null)
         {
-            waitReceipt(receiptId).subscribe(frame -> setInProgress(), err -> setAborted(), this::setAborted);
+            receipt.subscribe(frame -> setInProgress(), err -> setAborted());
         }
         else
         {
@@ -119,11 +135,12 @@ public class StompClientTransaction<StompConnectConfig extends IStompConnectConf
             return null;
         }
 
+        Mono<StompFrame> receipt = waitReceipt(receiptId);
         receiptId = sendStompMessage(populateRequest(new StompFrame(null, null, StompFrameType.ABORT, null)), receiptId);
 
         if (receiptId != null)
         {
-            waitReceipt(receiptId).subscribe(frame -> setAborted(), err -> setAborted(), this::setAborted);
+            receipt.subscribe(frame -> setAborted(), err -> setAborted());
         }
         else
         {
@@ -141,11 +158,12 @@ public class StompClientTransaction<StompConnectConfig extends IStompConnectConf
             return null;
         }
 
+        Mono<StompFrame> receipt = waitReceipt(receiptId);
         receiptId = sendStompMessage(populateRequest(new StompFrame(null, null, StompFrameType.COMMIT, null)), receiptId);
 
         if (receiptId != null)
         {
-            waitReceipt(receiptId).subscribe(frame -> setCommitted(), err -> setAborted(), this::setAborted);
+            receipt.subscribe(frame -> setCommitted(), err -> setAborted());
         }
         else
         {
@@ -195,10 +213,8 @@ public class StompClientTransaction<StompConnectConfig extends IStompConnectConf
         {
             return;
         }
-        ConnectableFlux<StompFrame> connectableStream = getDelegatee().deliverMessageStream().filter(msg -> {
-            Map<String, String> msgHeaders = msg.getHeaders() == null ? Collections.emptyMap() : msg.getHeaders();
-            return getTransactionId().equals(msgHeaders.get(StompHeaders.TRANSACTION));
-        }).publish();
+        // Frames of this transaction are indexed by the delegatee, see StompFrameRouter
+        ConnectableFlux<StompFrame> connectableStream = registerRoute().publish();
 
         this.messageStream = connectableStream;
         this.deliverMessageDispose = connectableStream.connect();
@@ -224,6 +240,8 @@ public class StompClientTransaction<StompConnectConfig extends IStompConnectConf
     {
         disconnectDeliverMessage();
 
+        deregisterRoute();
+
         setTransactionStatus(StompTransactionStatus.ABORTED);
     }
 
@@ -238,6 +256,27 @@ public class StompClientTransaction<StompConnectConfig extends IStompConnectConf
     {
         disconnectDeliverMessage();
 
+        deregisterRoute();
+
         setTransactionStatus(StompTransactionStatus.COMMITTED);
     }
+
+    protected synchronized Flux<StompFrame> registerRoute()
+    {
+        if (routedMessageStream == null)
+        {
+            routedMessageStream = getDelegatee().registerTransactionRoute(getTransactionId());
+        }
+        return routedMessageStream;
+    }
+
+    protected synchronized void deregisterRoute()
+    {
+        if (routedMessageStream == null)
+        {
+            return;
+        }
+        routedMessageStream = null;
+        getDelegatee().deregisterTransactionRoute(getTransactionId());
+    }
 }
@@ -0,0 +1,205 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.internal.config.StompDeduplicationConfig;
+import com.connector.common.stomp.internal.model.StompFrame;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Remembers the ids of handled messages so a redelivery of one of them can be recognized. The most recent ids are kept
+// exactly, bounded by count and age. Optionally the ids evicted from them are kept by a pair of bloom filters, the
+// older one being dropped whenever the newer one is full, which trades an exact answer for a few bits per id.
+public class StompDeduplicator
+{
+    private final String                      idHeader;
+    private final int                         maxIds;
+    private final long                        maxAgeNanos;
+    private final LinkedHashMap<String, Long> recentIds;
+    private final int                         filterExpectedIds;
+    private final double                      filterFalsePositiveRate;
+    private final AtomicLong                  duplicateCount;
+
+    private BloomFilter currentFilter;
+    private BloomFilter previousFilter;
+
+    public StompDeduplicator(StompDeduplicationConfig config)
+    {
+        this.idHeader = config.getIdHeader();
+        this.maxIds = config.getMaxIds();
+        this.maxAgeNanos = config.getMaxAge() == null ? -1 : config.getMaxAge().toNanos();
+        this.recentIds = new LinkedHashMap<>();
+        this.filterExpectedIds = config.getFilterExpectedIds();
+        this.filterFalsePositiveRate = config.getFilterFalsePositiveRate();
+        this.duplicateCount = new AtomicLong();
+        if (filterExpectedIds > 0)
+        {
+            this.currentFilter = new BloomFilter(filterExpectedIds, filterFalsePositiveRate);
+        }
+    }
+
+    public String getId(StompFrame msg)
+    {
+        return msg.getHeaders() == null ? null : msg.getHeaders().get(idHeader);
+    }
+
+    // Messages without an id are never duplicates
+    public boolean isDuplicate(StompFrame msg)
+    {
+        String id = getId(msg);
+        if (id == null)
+        {
+            return false;
+        }
+        boolean duplicate;
+        synchronized (this)
+        {
+            evictExpired(System.nanoTime());
+            duplicate = recentIds.containsKey(id) || currentFilter != null && (currentFilter.mightContain(id) || previousFilter != null && previousFilter.mightContain(id));
+        }
+        if (duplicate)
+        {
+            duplicateCount.incrementAndGet();
+        }
+        return duplicate;
+    }
+
+    public void remember(StompFrame msg)
+    {
+        String id = getId(msg);
+        if (id == null)
+        {
+            return;
+        }
+        synchronized (this)
+        {
+            long now = System.nanoTime();
+            evictExpired(now);
+            recentIds.remove(id);
+            recentIds.put(id, now);
+            if (recentIds.size() > maxIds)
+            {
+                Iterator<String> eldest = recentIds.keySet().iterator();
+                forget(eldest.next());
+                eldest.remove();
+            }
+        }
+    }
+
+    public long getDuplicateCount()
+    {
+        return duplicateCount.get();
+    }
+
+    public synchronized int getRecentIdCount()
+    {
+        return recentIds.size();
+    }
+
+    private void evictExpired(long now)
+    {
+        if (maxAgeNanos < 0)
+        {
+            return;
+        }
+        // ids are kept in the order they were remembered, so the expired ones are at the head
+        Iterator<Map.Entry<String, Long>> iterator = recentIds.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (now - entry.getValue() <= maxAgeNanos)
+            {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+
+    // Ids evicted by size are handed over to the filter, expired ones are forgotten for good
+    private void forget(String id)
+    {
+        if (currentFilter == null)
+        {
+            return;
+        }
+        if (currentFilter.size() >= filterExpectedIds)
+        {
+            previousFilter = currentFilter;
+            currentFilter = new BloomFilter(filterExpectedIds, filterFalsePositiveRate);
+        }
+        currentFilter.add(id);
+    }
+
+    private static final class BloomFilter
+    {
+        private final long[] bits;
+        private final long   bitCount;
+        private final int    hashCount;
+
+        private int size;
+
+        BloomFilter(int expectedIds, double falsePositiveRate)
+        {
+            long optimalBits = (long) Math.ceil(-expectedIds * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bits = new long[(int) Math.max(1, (optimalBits + 63) >>> 6)];
+            this.bitCount = (long) bits.length << 6;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedIds * Math.log(2)));
+        }
+
+        void add(String id)
+        {
+            long hash1 = hash(id);
+            long hash2 = mix(hash1) | 1;
+            for (int i = 0; i < hashCount; i++)
+            {
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            size++;
+        }
+
+        boolean mightContain(String id)
+        {
+            long hash1 = hash(id);
+            long hash2 = mix(hash1) | 1;
+            for (int i = 0; i < hashCount; i++)
+            {
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                if ((bits[(int) (bit >>> 6)] & 1L << bit) == 0)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int size()
+        {
+            return size;
+        }
+
+        // 64 bit FNV-1a over the chars, so ids sharing a String.hashCode still set different bits
+        private static long hash(String id)
+        {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < id.length(); i++)
+            {
+                hash ^= id.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return mix(hash);
+        }
+
+        // MurmurHash3 finalizer
+        private static long mix(long hash)
+        {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb3fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.constant.StompFrameType;
+import com.connector.common.stomp.constant.StompOverflowStrategy;
+import com.connector.common.stomp.internal.config.StompDeliveryQueueConfig;
+import com.connector.common.stomp.internal.model.StompFrame;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Bounded hand-off between the thread routing frames and the subscription's handler. Frames are drained on a worker of
+// the configured scheduler as downstream demand allows, so a slow handler only fills its own queue and the overflow
+// strategy decides what happens next instead of the connection buffering without limit.
+// In conflating mode a pending frame is replaced by a newer frame with the same key, keeping its place in the queue, so
+// memory is bounded by the distinct pending keys and a slow consumer always drains the freshest frame per key. Replaced
+// frames are handed to the superseded frame handler, e.g. to acknowledge them.
+// Frames dropped in CLIENT_INDIVIDUAL ack mode are never acknowledged and are left to the broker's redelivery policy. In
+// CLIENT ack mode the next cumulative ACK would acknowledge them, so subscriptions refuse a lossy queue in that mode.
+// Only MESSAGE frames are dropped or conflated, others such as RECEIPT and ERROR are always queued, so a queue in front
+// of the whole connection can not lose the answer to a request.
+public class StompDeliveryQueue
+{
+    private final String                              name;
+    private final int                                 capacity;
+    private final StompOverflowStrategy               overflowStrategy;
+    private final Scheduler                           scheduler;
+    private final Function<StompFrame, ?>             conflationKey;
+    private final Consumer<StompFrame>                supersededFrameHandler;
+    private final ArrayDeque<PendingFrame>            frames;
+    private final LinkedHashMap<Object, PendingFrame> conflatedFrames;
+    private final ReentrantLock                       lock;
+    private final Condition                           notFull;
+    private final AtomicInteger                       wip;
+    private final AtomicLong                          droppedCount;
+    private final AtomicLong                          conflatedCount;
+    private final AtomicLong                          handoffCount;
+    private final AtomicLong                          handoffLatencyNanos;
+    private final AtomicLong                          maxHandoffLatencyNanos;
+
+    private volatile FluxSink<StompFrame>             sink;
+    private volatile Scheduler.Worker                 worker;
+    private volatile Disposable                       upstream;
+    private volatile boolean                          done;
+    private volatile boolean                          cancelled;
+    private volatile Throwable                        error;
+
+    public StompDeliveryQueue(String name, StompDeliveryQueueConfig config)
+    {
+        this(name, config, null);
+    }
+
+    public StompDeliveryQueue(String name, StompDeliveryQueueConfig config, Consumer<StompFrame> supersededFrameHandler)
+    {
+        this.name = name;
+        this.capacity = config.getCapacity();
+        this.overflowStrategy = config.getOverflowStrategy();
+        this.scheduler = config.getScheduler();
+        this.conflationKey = config.getConflationKey();
+        this.supersededFrameHandler = supersededFrameHandler;
+        this.frames = conflationKey == null ? new ArrayDeque<>() : null;
+        this.conflatedFrames = conflationKey == null ? null : new LinkedHashMap<>();
+        this.lock = new ReentrantLock();
+        this.notFull = lock.newCondition();
+        this.wip = new AtomicInteger();
+        this.droppedCount = new AtomicLong();
+        this.conflatedCount = new AtomicLong();
+        this.handoffCount = new AtomicLong();
+        this.handoffLatencyNanos = new AtomicLong();
+        this.maxHandoffLatencyNanos = new AtomicLong();
+    }
+
+    // The returned stream is meant to be subscribed to once
+    public Flux<StompFrame> connect(Flux<StompFrame> source)
+    {
+        return Flux.create(sink -> {
+            this.sink = sink;
+            this.worker = scheduler.createWorker();
+            this.upstream = source.subscribe(this::offer, this::fail, this::complete);
+            if (done)
+            {
+                // frames buffered by the route may already have overflowed the queue
+                upstream.dispose();
+            }
+            sink.onRequest(n -> drain());
+            sink.onDispose(() -> {
+                cancelled = true;
+                upstream.dispose();
+                worker.dispose();
+                clear();
+            });
+        });
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    public StompOverflowStrategy getOverflowStrategy()
+    {
+        return overflowStrategy;
+    }
+
+    public int getDepth()
+    {
+        lock.lock();
+        try
+        {
+            return pendingCount();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    // Pending frames replaced by a newer frame with the same conflation key
+    public long getConflatedCount()
+    {
+        return conflatedCount.get();
+    }
+
+    public long getHandoffCount()
+    {
+        return handoffCount.get();
+    }
+
+    // Time frames spent queued before being handed to the downstream, measured when they are drained
+    public Duration getAverageHandoffLatency()
+    {
+        long count = handoffCount.get();
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(handoffLatencyNanos.get() / count);
+    }
+
+    public Duration getMaxHandoffLatency()
+    {
+        return Duration.ofNanos(maxHandoffLatencyNanos.get());
+    }
+
+    private void offer(StompFrame frame)
+    {
+        if (done || cancelled)
+        {
+            return;
+        }
+        boolean droppable = frame.getType() == StompFrameType.MESSAGE;
+        Object key = conflationKey == null || !droppable ? null : conflationKey.apply(frame);
+        if (key != null && conflate(key, frame))
+        {
+            return;
+        }
+        lock.lock();
+        try
+        {
+            if (droppable && (pendingCount() >= capacity || overflowStrategy == StompOverflowStrategy.LATEST_ONLY))
+            {
+                switch (overflowStrategy)
+                {
+                case BLOCK:
+                    while (pendingCount() >= capacity && !cancelled)
+                    {
+                        try
+                        {
+                            notFull.await();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            Thread.currentThread().interrupt();
+                            droppedCount.incrementAndGet();
+                            return;
+                        }
+                    }
+                    if (cancelled)
+                    {
+                        return;
+                    }
+                    break;
+                case DROP_NEWEST:
+                    droppedCount.incrementAndGet();
+                    return;
+                case DROP_OLDEST:
+                    if (removePendingMessages(1) > 0)
+                    {
+                        droppedCount.incrementAndGet();
+                    }
+                    break;
+                case LATEST_ONLY:
+                    droppedCount.addAndGet(removePendingMessages(Integer.MAX_VALUE));
+                    break;
+                case FAIL:
+                default:
+                    droppedCount.addAndGet(pendingCount() + 1L);
+                    clearPending();
+                    error = new IllegalStateException("Delivery queue of " + name + " overflowed, capacity: " + capacity);
+                    done = true;
+                    // nothing is accepted anymore, so the route is released right away instead of once the error drained
+                    if (upstream != null)
+                    {
+                        upstream.dispose();
+                    }
+                    drain();
+                    return;
+                }
+            }
+            addPending(key, frame);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    // Returns false when no frame with the key is pending
+    private boolean conflate(Object key, StompFrame frame)
+    {
+        StompFrame superseded;
+        lock.lock();
+        try
+        {
+            PendingFrame pendingFrame = conflatedFrames.get(key);
+            if (pendingFrame == null)
+            {
+                return false;
+            }
+            superseded = pendingFrame.frame;
+            pendingFrame.frame = frame;
+            conflatedCount.incrementAndGet();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        if (supersededFrameHandler != null)
+        {
+            supersededFrameHandler.accept(superseded);
+        }
+        return true;
+    }
+
+    private void fail(Throwable t)
+    {
+        error = t;
+        done = true;
+        drain();
+    }
+
+    private void complete()
+    {
+        done = true;
+        drain();
+    }
+
+    private StompFrame poll()
+    {
+        lock.lock();
+        try
+        {
+            PendingFrame pendingFrame = pollPending();
+            if (pendingFrame == null)
+            {
+                return null;
+            }
+            notFull.signal();
+            long latency = System.nanoTime() - pendingFrame.enqueuedNanos;
+            handoffCount.incrementAndGet();
+            handoffLatencyNanos.addAndGet(latency);
+            maxHandoffLatencyNanos.accumulateAndGet(latency, Math::max);
+            return pendingFrame.frame;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void clear()
+    {
+        lock.lock();
+        try
+        {
+            clearPending();
+            notFull.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // The pending* methods are called with the lock held
+    private int pendingCount()
+    {
+        return frames != null ? frames.size() : conflatedFrames.size();
+    }
+
+    private void addPending(Object key, StompFrame frame)
+    {
+        PendingFrame pendingFrame = new PendingFrame(frame, System.nanoTime());
+        if (frames != null)
+        {
+            frames.add(pendingFrame);
+            return;
+        }
+        // frames without a key are never conflated
+        conflatedFrames.put(key == null ? new Object() : key, pendingFrame);
+    }
+
+    private PendingFrame pollPending()
+    {
+        if (frames != null)
+        {
+            return frames.poll();
+        }
+        Iterator<PendingFrame> iterator = conflatedFrames.values().iterator();
+        if (!iterator.hasNext())
+        {
+            return null;
+        }
+        PendingFrame pendingFrame = iterator.next();
+        iterator.remove();
+        return pendingFrame;
+    }
+
+    // Removes up to max pending MESSAGE frames, oldest first, and returns how many were removed
+    private int removePendingMessages(int max)
+    {
+        Iterator<PendingFrame> iterator = frames != null ? frames.iterator() : conflatedFrames.values().iterator();
+        int removed = 0;
+        while (removed < max && iterator.hasNext())
+        {
+            if (iterator.next().frame.getType() == StompFrameType.MESSAGE)
+            {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private void clearPending()
+    {
+        if (frames != null)
+        {
+            frames.clear();
+            return;
+        }
+        conflatedFrames.clear();
+    }
+
+    private void drain()
+    {
+        if (wip.getAndIncrement() != 0)
+        {
+            return;
+        }
+        worker.schedule(this::drainLoop);
+    }
+
+    private void drainLoop()
+    {
+        int missed = 1;
+        do
+        {
+            FluxSink<StompFrame> s = sink;
+            while (!cancelled && s.requestedFromDownstream() > 0)
+            {
+                StompFrame frame = poll();
+                if (frame == null)
+                {
+                    break;
+                }
+                s.next(frame);
+            }
+            if (done && !cancelled && getDepth() == 0)
+            {
+                if (error != null)
+                {
+                    s.error(error);
+                }
+                else
+                {
+                    s.complete();
+                }
+                return;
+            }
+            missed = wip.addAndGet(-missed);
+        }
+        while (missed != 0);
+    }
+
+    private static final class PendingFrame
+    {
+        private final long enqueuedNanos;
+
+        // replaced in place when a newer frame is conflated into this one
+        private StompFrame frame;
+
+        PendingFrame(StompFrame frame, long enqueuedNanos)
+        {
+            this.frame = frame;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
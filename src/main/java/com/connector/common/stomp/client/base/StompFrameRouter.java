@@ -0,0 +1,134 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.internal.exception.StompRouteOverflowException;
+import com.connector.common.stomp.internal.model.StompFrame;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.EmitResult;
+import reactor.core.publisher.Sinks.Many;
+import reactor.util.concurrent.Queues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hands frames to the stream registered for their key (subscription id, destination, ...) with a single map lookup, so
+// dispatch cost does not grow with the number of registered streams. Frames routed before the stream is subscribed to
+// are buffered. Emissions on a route are serialized because routing and deregistration may happen on different threads.
+// A route buffers up to Queues.SMALL_BUFFER_SIZE frames. A frame that does not fit fails the route with a
+// StompRouteOverflowException instead of being dropped silently, and is counted as dropped. The route is removed, so a
+// later registration of the key starts a fresh stream.
+public class StompFrameRouter
+{
+    private final ConcurrentHashMap<String, Many<StompFrame>> routes;
+    private final AtomicLong                                  droppedCount;
+
+    public StompFrameRouter()
+    {
+        this.routes = new ConcurrentHashMap<>();
+        this.droppedCount = new AtomicLong();
+    }
+
+    // Registering an already registered key shares the existing stream. The stream outlives its subscribers, so a
+    // delivery stream can be disconnected and connected again to the same route.
+    public Flux<StompFrame> register(String key)
+    {
+        return routes.computeIfAbsent(key, k -> Sinks.many().multicast().onBackpressureBuffer(Queues.SMALL_BUFFER_SIZE, false)).asFlux();
+    }
+
+    public void deregister(String key)
+    {
+        Many<StompFrame> route = routes.remove(key);
+        if (route != null)
+        {
+            synchronized (route)
+            {
+                route.tryEmitComplete();
+            }
+        }
+    }
+
+    // Returns false when no stream is registered for the key, the stream is already terminated or the frame overflowed it
+    public boolean route(String key, StompFrame frame)
+    {
+        if (key == null)
+        {
+            return false;
+        }
+        Many<StompFrame> route = routes.get(key);
+        if (route == null)
+        {
+            return false;
+        }
+        synchronized (route)
+        {
+            EmitResult result = route.tryEmitNext(frame);
+            // a route without subscribers only fails to buffer once its buffer is full
+            if (result == EmitResult.FAIL_OVERFLOW || result == EmitResult.FAIL_ZERO_SUBSCRIBER)
+            {
+                droppedCount.incrementAndGet();
+                routes.remove(key, route);
+                route.tryEmitError(new StompRouteOverflowException(key, Queues.SMALL_BUFFER_SIZE));
+            }
+            return result.isSuccess();
+        }
+    }
+
+    public void error(Throwable t)
+    {
+        for (Many<StompFrame> route : removeAll())
+        {
+            synchronized (route)
+            {
+                route.tryEmitError(t);
+            }
+        }
+    }
+
+    public void complete()
+    {
+        for (Many<StompFrame> route : removeAll())
+        {
+            synchronized (route)
+            {
+                route.tryEmitComplete();
+            }
+        }
+    }
+
+    // Frames that overflowed their route
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    public boolean isRegistered(String key)
+    {
+        return key != null && routes.containsKey(key);
+    }
+
+    public boolean isEmpty()
+    {
+        return routes.isEmpty();
+    }
+
+    public int size()
+    {
+        return routes.size();
+    }
+
+    private List<Many<StompFrame>> removeAll()
+    {
+        List<Many<StompFrame>> removed = new ArrayList<>(routes.size());
+        for (String key : routes.keySet())
+        {
+            Many<StompFrame> route = routes.remove(key);
+            if (route != null)
+            {
+                removed.add(route);
+            }
+        }
+        return removed;
+    }
+}
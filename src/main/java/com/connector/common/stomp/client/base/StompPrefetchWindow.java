@@ -0,0 +1,112 @@
+package com.connector.common.stomp.client.base;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+// Tracks the ack ids of the messages handed to the handlers and not acknowledged yet. Once maxUnacked of them are
+// outstanding, the next message waits for an ACK or NACK to free a slot, so handling and therefore acks pace the
+// delivery instead of the broker's send rate.
+public class StompPrefetchWindow
+{
+    private final int                   maxUnacked;
+    private final LinkedHashSet<String> unackedIds;
+    private final ArrayDeque<Waiter>    waiters;
+
+    public StompPrefetchWindow(int maxUnacked)
+    {
+        if (maxUnacked <= 0)
+        {
+            throw new IllegalArgumentException("Max unacked must be positive: " + maxUnacked);
+        }
+        this.maxUnacked = maxUnacked;
+        this.unackedIds = new LinkedHashSet<>();
+        this.waiters = new ArrayDeque<>();
+    }
+
+    // Completes once the message with the given ack id fits in the window, messages without an ack id are never held
+    public Mono<Void> acquire(String ackId)
+    {
+        if (ackId == null)
+        {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            synchronized (this)
+            {
+                if (unackedIds.size() < maxUnacked)
+                {
+                    unackedIds.add(ackId);
+                    return Mono.empty();
+                }
+                Waiter waiter = new Waiter(ackId);
+                waiters.add(waiter);
+                return waiter.sink.asMono();
+            }
+        });
+    }
+
+    // A cumulative ack also acknowledges every message acquired before the acked one
+    public void acked(String ackId, boolean cumulative)
+    {
+        List<Waiter> admitted = new ArrayList<>();
+        synchronized (this)
+        {
+            if (cumulative && unackedIds.contains(ackId))
+            {
+                Iterator<String> iterator = unackedIds.iterator();
+                while (iterator.hasNext())
+                {
+                    String unackedId = iterator.next();
+                    iterator.remove();
+                    if (unackedId.equals(ackId))
+                    {
+                        break;
+                    }
+                }
+            }
+            else
+            {
+                unackedIds.remove(ackId);
+            }
+            while (unackedIds.size() < maxUnacked && !waiters.isEmpty())
+            {
+                Waiter waiter = waiters.poll();
+                unackedIds.add(waiter.ackId);
+                admitted.add(waiter);
+            }
+        }
+        // admitted messages are handled synchronously by the subscribers, so they are released outside the lock
+        for (Waiter waiter : admitted)
+        {
+            waiter.sink.tryEmitEmpty();
+        }
+    }
+
+    public int getMaxUnacked()
+    {
+        return maxUnacked;
+    }
+
+    public synchronized int getUnacked()
+    {
+        return unackedIds.size();
+    }
+
+    private static final class Waiter
+    {
+        private final String           ackId;
+        private final Sinks.Empty<Void> sink;
+
+        Waiter(String ackId)
+        {
+            this.ackId = ackId;
+            this.sink = Sinks.empty();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.internal.config.StompPublishConfig;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompPublishConfirm;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+// Publishes a stream of frames without waiting for a receipt before sending the next frame. A receipt is asked for on
+// every receiptInterval-th frame, and as the broker handles the frames of a connection in order, it confirms the frames
+// sent before it too. Once maxOutstandingReceipts receipts are awaited, the next frame asking for one waits for a slot.
+// Frames are sent as they arrive, so the frames after the last receipted one are confirmed as sent, without a receipt,
+// once the stream completed, as with an interval of 0. One publisher serves a single stream, its frames are confirmed in
+// the order they were published.
+public class StompPublisher
+{
+    private final IStompClient<?, ?, ?, ?> client;
+    private final StompPublishConfig       config;
+    private final String                   publishId;
+    private final StompPrefetchWindow      receiptWindow;
+    private final List<StompFrame>         unreceiptedFrames;
+
+    private long sequence;
+
+    public StompPublisher(IStompClient<?, ?, ?, ?> client, StompPublishConfig config)
+    {
+        this.client = client;
+        this.config = config;
+        this.publishId = UUID.randomUUID().toString();
+        this.receiptWindow = new StompPrefetchWindow(config.getMaxOutstandingReceipts());
+        this.unreceiptedFrames = new ArrayList<>();
+    }
+
+    public Flux<StompPublishConfirm> publish(Publisher<StompFrame> frames)
+    {
+        return Flux.from(frames)
+                   .concatMap(this::send)
+                   .concatWith(Mono.fromSupplier(this::confirmUnreceipted))
+                   .flatMapSequential(Function.identity(), config.getMaxOutstandingReceipts() + 1)
+                   .flatMapIterable(Function.identity());
+    }
+
+    public int getOutstandingReceipts()
+    {
+        return receiptWindow.getUnacked();
+    }
+
+    // Emits the confirmations of the frames covered once they are known, frames not asking for a receipt emit nothing
+    private Mono<Mono<List<StompPublishConfirm>>> send(StompFrame frame)
+    {
+        long frameSequence = sequence++;
+        int receiptInterval = config.getReceiptInterval();
+        if (receiptInterval == 0)
+        {
+            return client.sendStompMessageAsync(frame, null).thenReturn(Mono.just(Collections.singletonList(new StompPublishConfirm(frameSequence, frame, null))));
+        }
+        if ((frameSequence + 1) % receiptInterval != 0)
+        {
+            return client.sendStompMessageAsync(frame, null).then(Mono.fromRunnable(() -> unreceiptedFrames.add(frame)));
+        }
+        String receiptId = publishId + "-" + frameSequence;
+        // The receipt is only registered once the frame is about to be written, and sendStompMessage fails it when the
+        // write throws, so a send that never happens leaves no entry behind
+        return receiptWindow.acquire(receiptId).then(client.awaitWritable()).then(Mono.defer(() -> {
+            List<StompFrame> coveredFrames = new ArrayList<>(unreceiptedFrames);
+            coveredFrames.add(frame);
+            unreceiptedFrames.clear();
+            Mono<StompFrame> receipt;
+            try
+            {
+                receipt = client.waitReceipt(receiptId, config.getReceiptTimeout());
+                client.sendStompMessage(frame, receiptId);
+            }
+            catch (Throwable e)
+            {
+                return Mono.error(e);
+            }
+            return Mono.just(receipt.doFinally(signal -> receiptWindow.acked(receiptId, false))
+                                    .map(receiptFrame -> confirm(frameSequence - coveredFrames.size() + 1, coveredFrames, receiptFrame)));
+        })).doOnError(e -> receiptWindow.acked(receiptId, false));
+    }
+
+    // The frames sent after the last receipt asked for, confirmed once the stream completed
+    private Mono<List<StompPublishConfirm>> confirmUnreceipted()
+    {
+        List<StompPublishConfirm> confirms = confirm(sequence - unreceiptedFrames.size(), unreceiptedFrames, null);
+        unreceiptedFrames.clear();
+        return Mono.just(confirms);
+    }
+
+    private static List<StompPublishConfirm> confirm(long firstSequence, List<StompFrame> frames, StompFrame receipt)
+    {
+        List<StompPublishConfirm> confirms = new ArrayList<>(frames.size());
+        for (int i = 0; i < frames.size(); i++)
+        {
+            confirms.add(new StompPublishConfirm(firstSequence + i, frames.get(i), receipt));
+        }
+        return confirms;
+    }
+}
@@ -0,0 +1,139 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.model.StompFrame;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Correlates RECEIPT frames with the requests waiting for them. Every outstanding receipt is one map entry completed by a
+// single lookup when its RECEIPT arrives, a receipt that never arrives is failed and dropped by a timer task on the
+// shared scheduler instead of waiting forever.
+public class StompReceiptTable
+{
+    private final ConcurrentHashMap<String, PendingReceipt> pendingReceipts;
+    private final Scheduler                                 timer;
+
+    public StompReceiptTable()
+    {
+        this(Schedulers.parallel());
+    }
+
+    public StompReceiptTable(Scheduler timer)
+    {
+        this.pendingReceipts = new ConcurrentHashMap<>();
+        this.timer = timer;
+    }
+
+    // Registering an outstanding receipt again shares it, a timeout replaces the previous one. A null timeout waits until
+    // the receipt arrives or the table is failed.
+    public Mono<StompFrame> register(String receiptId, Duration timeout)
+    {
+        PendingReceipt pendingReceipt = pendingReceipts.computeIfAbsent(receiptId, k -> new PendingReceipt());
+        if (timeout != null)
+        {
+            pendingReceipt.expireAfter(timer.schedule(() -> expire(receiptId, pendingReceipt, timeout), timeout.toMillis(), TimeUnit.MILLISECONDS));
+        }
+        return pendingReceipt.sink.asMono();
+    }
+
+    // Like register, but keeps the timeout a waiter registered with, so the client's default does not override it
+    public Mono<StompFrame> registerDefault(String receiptId, Duration defaultTimeout)
+    {
+        PendingReceipt pendingReceipt = pendingReceipts.computeIfAbsent(receiptId, k -> new PendingReceipt());
+        if (defaultTimeout != null)
+        {
+            pendingReceipt.expireAfterIfUnset(() -> timer.schedule(() -> expire(receiptId, pendingReceipt, defaultTimeout), defaultTimeout.toMillis(), TimeUnit.MILLISECONDS));
+        }
+        return pendingReceipt.sink.asMono();
+    }
+
+    // Returns false when nobody waits for the receipt
+    public boolean complete(StompFrame receipt)
+    {
+        String receiptId = receipt.getHeaders() == null ? null : receipt.getHeaders().get(StompHeaders.RECEIPT_ID);
+        if (receiptId == null)
+        {
+            return false;
+        }
+        PendingReceipt pendingReceipt = pendingReceipts.remove(receiptId);
+        if (pendingReceipt == null)
+        {
+            return false;
+        }
+        pendingReceipt.cancelExpiry();
+        pendingReceipt.sink.tryEmitValue(receipt);
+        return true;
+    }
+
+    public void fail(String receiptId, Throwable t)
+    {
+        PendingReceipt pendingReceipt = pendingReceipts.remove(receiptId);
+        if (pendingReceipt == null)
+        {
+            return;
+        }
+        pendingReceipt.cancelExpiry();
+        pendingReceipt.sink.tryEmitError(t);
+    }
+
+    public void failAll(Throwable t)
+    {
+        for (String receiptId : pendingReceipts.keySet())
+        {
+            fail(receiptId, t);
+        }
+    }
+
+    public int size()
+    {
+        return pendingReceipts.size();
+    }
+
+    private void expire(String receiptId, PendingReceipt pendingReceipt, Duration timeout)
+    {
+        // the id may have been completed and registered again in the meantime
+        if (pendingReceipts.remove(receiptId, pendingReceipt))
+        {
+            pendingReceipt.sink.tryEmitError(new TimeoutException("Receipt " + receiptId + " not received within " + timeout));
+        }
+    }
+
+    private static final class PendingReceipt
+    {
+        private final Sinks.One<StompFrame> sink = Sinks.one();
+
+        private Disposable expiry;
+
+        synchronized void expireAfter(Disposable expiry)
+        {
+            cancelExpiry();
+            this.expiry = expiry;
+        }
+
+        synchronized void expireAfterIfUnset(Supplier<Disposable> expiry)
+        {
+            if (this.expiry == null)
+            {
+                this.expiry = expiry.get();
+            }
+        }
+
+        synchronized void cancelExpiry()
+        {
+            if (expiry != null)
+            {
+                expiry.dispose();
+                expiry = null;
+            }
+        }
+    }
+}
@@ -4,9 +4,14 @@ import com.connector.common.stomp.constant.StompAckMode;
 import com.connector.common.stomp.constant.StompConnectionStatus;
 import com.connector.common.stomp.constant.StompFrameType;
 import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.constant.StompOverflowStrategy;
 import com.connector.common.stomp.constant.StompSubscriptionStatus;
-import com.connector.common.stomp.constant.StompVersion;
+import com.connector.common.stomp.internal.config.StompDeduplicationConfig;
+import com.connector.common.stomp.internal.config.StompDeliveryQueueConfig;
+import com.connector.common.stomp.internal.config.StompPartitionConfig;
+import com.connector.common.stomp.internal.exception.StompRouteOverflowException;
 import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompHeaderMap;
 import reactor.core.Disposable;
 import reactor.core.publisher.ConnectableFlux;
 import reactor.core.publisher.Flux;
@@ -15,8 +20,11 @@ import reactor.core.publisher.Sinks;
 import reactor.core.publisher.Sinks.Many;
 
 import java.text.MessageFormat;
-import java.util.LinkedHashMap;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 public abstract class StompSubscriptionBase<StompConnectConfig extends IStompConnectConfig, StompDisconnectConfig, StompSessionInfo extends IStompSessionInfo, TransportPayload> extends StompClientDelegate<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload> implements IStompSubscription<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload>
 {
@@ -24,18 +32,35 @@ public abstract class StompSubscriptionBase<StompConnectConfig extends IStompCon
     private final String                        id;
     private final StompAckMode                  ackMode;
     private final Many<StompSubscriptionStatus> subscriptionStatusPublisher;
-
-    private Flux<StompFrame>        messageStream;
-    private StompSubscriptionStatus subscriptionStatus;
-    private IStompResponseHandler   responseAckHandler;
-    private Disposable              deliverMessageDispose;
+    private final StompFrameRouter              transactionRouter;
+
+    private Flux<StompFrame>           messageStream;
+    private StompSubscriptionStatus    subscriptionStatus;
+    private IStompResponseHandler      responseAckHandler;
+    private Disposable                 deliverMessageDispose;
+    private volatile boolean           deliverMessageDisconnecting;
+    private Flux<StompFrame>           routedMessageStream;
+    private StompDeliveryQueueConfig   deliveryQueueConfig;
+    private StompDeliveryQueue         deliveryQueue;
+    private StompPartitionConfig       partitionConfig;
+    private IStompBatchResponseHandler batchResponseAckHandler;
+    private int                        maxBatchSize;
+    private Duration                   maxBatchLatency;
+    private Flux<List<StompFrame>>     batchStream;
+    private StompAckCoalescer          ackCoalescer;
+    private IStompAsyncResponseHandler asyncResponseAckHandler;
+    private int                        maxAsyncInFlight;
+    private int                        maxUnacked;
+    private boolean                    brokerPrefetchHeaders;
+    private StompPrefetchWindow        prefetchWindow;
+    private StompDeduplicator          deduplicator;
 
     protected StompSubscriptionBase(IStompClient<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload> stompClient, String destination, String id, StompAckMode ackMode)
     {
         super(stompClient);
 
         registerWrappedRequestHandler(msg -> {
-            Map<String, String> headers = msg.getHeaders() == null ? new LinkedHashMap<>() : msg.getHeaders();
+            Map<String, String> headers = msg.getHeaders() == null ? new StompHeaderMap() : msg.getHeaders();
             switch (msg.getType())
             {
             case SEND:
@@ -47,8 +72,15 @@ public abstract class StompSubscriptionBase<StompConnectConfig extends IStompCon
                     headers.put(StompHeaders.ID, getSubscriptionId());
                 }
                 headers.put(StompHeaders.DESTINATION, getDestination());
+                if (brokerPrefetchHeaders)
+                {
+                    headers.put(StompHeaders.ACTIVEMQ_PREFETCH_SIZE, String.valueOf(maxUnacked));
+                    headers.put(StompHeaders.PREFETCH_COUNT, String.valueOf(maxUnacked));
+                }
                 break;
             case UNSUBSCRIBE:
+                // acks held back must reach the broker before it forgets the subscription
+                flushAcks();
                 if (getSubscriptionId() != null)
                 {
                     headers.put(StompHeaders.ID, getSubscriptionId());
@@ -65,6 +97,7 @@ public abstract class StompSubscriptionBase<StompConnectConfig extends IStompCon
                 // transaction frame types handled by the child class
                 return msg;
             case DISCONNECT:
+                flushAcks();
                 // generic frame types, not handled this
                 return msg;
             case STOMP:
@@ -86,11 +119,20 @@ public abstract class StompSubscriptionBase<StompConnectConfig extends IStompCon
         this.id = id;
         this.ackMode = ackMode;
         this.subscriptionStatusPublisher = Sinks.many().replay().latest();
+        this.transactionRouter = new StompFrameRouter();
         subscriptionStatusPublisher.tryEmitNext(StompSubscriptionStatus.UNINITIALIZED).orThrow();
         subscriptionStatusStream().subscribe(status -> this.subscriptionStatus = status);
+        // the client sends DISCONNECT on its own, so acks held back are flushed through its disconnect handlers
+        getDelegatee().registerDisconnectHandler(this::flushAcks);
         getDelegatee().connectionStatusStream().doOnNext(status -> {
             if (status == StompConnectionStatus.DISCONNECTED)
             {
+                // acks of the previous session mean nothing to the next one
+                if (ackCoalescer != null)
+                {
+                    ackCoalescer.clear();
+                }
+                deregisterRoute();
                 setSubscriptionStatus(StompSubscriptionStatus.UNSUBSCRIBED);
             }
         }).subscribe();
@@ -103,36 +145,295 @@ public abstract class StompSubscriptionBase<StompConnectConfig extends IStompCon
         {
             return;
         }
-        ConnectableFlux<StompFrame> connectableStream = getDelegatee().deliverMessageStream().filter(msg -> {
-            Map<String, String> msgHeaders = msg.getHeaders();
-            boolean fromServer = msg.getType().fromServer();
-            boolean containMessageId = msgHeaders.containsKey(StompHeaders.MESSAGE_ID);
-            boolean isDestinationMatch = getDestination().equals(msgHeaders.get(StompHeaders.DESTINATION));
-            if (!fromServer || !containMessageId || !isDestinationMatch)
-            {
-                return false;
-            }
-            if (StompVersion.STOMP_1_0.equals(getConnectedSessionInfo().getVersion()))
-            {
-                return getSubscriptionId() == null && !msgHeaders.containsKey(StompHeaders.SUBSCRIPTION) || getSubscriptionId() != null && getSubscriptionId().equals(msgHeaders.get(StompHeaders.SUBSCRIPTION));
-            }
-            else
+        deliverMessageDisconnecting = false;
+        // Frames of this subscription are routed by the client, see StompFrameRouter. The route fails with the
+        // connection, which the connection status takes care of. A route that overflowed lost a frame, which ends the
+        // subscription so the broker redelivers what was not acknowledged.
+        boolean[] routeFailed = new boolean[1];
+        Flux<StompFrame> routedStream = registerRoute().doOnError(e -> routeFailed[0] = !(e instanceof StompRouteOverflowException));
+        if (deliveryQueueConfig != null)
+        {
+            deliveryQueue = new StompDeliveryQueue(describeClient(), deliveryQueueConfig, getAckMode() == StompAckMode.CLIENT_INDIVIDUAL ? this::ackSuperseded : null);
+            routedStream = deliveryQueue.connect(routedStream);
+        }
+        // A cumulative ACK of a duplicate must follow the acks of the messages before it, so in client mode duplicates
+        // are recognized where messages are acked in order instead
+        if (deduplicator != null && getAckMode() != StompAckMode.CLIENT)
+        {
+            routedStream = routedStream.concatMap(this::dropDuplicate);
+        }
+        if (maxUnacked > 0)
+        {
+            StompPrefetchWindow window = new StompPrefetchWindow(maxUnacked);
+            prefetchWindow = window;
+            routedStream = routedStream.concatMap(msg -> window.acquire(getAckId(msg)).thenReturn(msg));
+        }
+        ConnectableFlux<?> connectableStream;
+        Flux<StompFrame> handledStream;
+        if (maxBatchSize > 0)
+        {
+            ConnectableFlux<List<StompFrame>> connectableBatches = handleBatches(routedStream).publish();
+            connectableStream = connectableBatches;
+            handledStream = connectableBatches.flatMapIterable(batch -> batch);
+            this.batchStream = connectableBatches;
+        }
+        else
+        {
+            ConnectableFlux<StompFrame> connectableFrames = handleFrames(routedStream).publish();
+            connectableStream = connectableFrames;
+            handledStream = connectableFrames;
+        }
+        // Transactions over this subscription only see its frames, so they are indexed here instead of in the client
+        handledStream.subscribe(frame -> {
+            if (!transactionRouter.isEmpty())
             {
-                return getSubscriptionId().equals(msgHeaders.get(StompHeaders.SUBSCRIPTION));
+                transactionRouter.route(frame.getHeaders().get(StompHeaders.TRANSACTION), frame);
             }
-        }).flatMap(msg -> {
-            try
+        }, e -> {
+            transactionRouter.error(e);
+            // disconnecting the delivery stream cancels it with an error too
+            if (!deliverMessageDisconnecting && !routeFailed[0])
             {
-                return ackMessage(msg) ? Mono.just(msg) : Mono.empty();
+                failSubscription(e);
             }
-            catch (Throwable e)
+        }, transactionRouter::complete);
+
+        this.messageStream = handledStream;
+        this.deliverMessageDispose = connectableStream.connect();
+    }
+
+    private Flux<StompFrame> handleFrames(Flux<StompFrame> routedStream)
+    {
+        if (partitionConfig == null)
+        {
+            if (asyncResponseAckHandler == null)
             {
-                return Mono.error(e);
+                return routedStream.flatMap(this::handleMessage);
             }
-        }).publish();
+            // An ACK in client mode covers every earlier message, so handler results are acked in the order the
+            // messages arrived. Individual acks are sent as soon as their handler completes.
+            Flux<HandledMessage> handledStream = getAckMode() == StompAckMode.CLIENT ? routedStream.flatMapSequential(this::handleMessageAsync, maxAsyncInFlight) : routedStream.flatMap(this::handleMessageAsync, maxAsyncInFlight);
+            return handledStream.concatMap(this::acknowledgeHandled);
+        }
+        // Every lane handles its frames one at a time on its own worker, so frames sharing a key keep their order
+        StompPartitionConfig lanes = partitionConfig;
+        if (asyncResponseAckHandler == null)
+        {
+            return routedStream.groupBy(lanes::laneOf).flatMap(lane -> lane.publishOn(lanes.getScheduler()).concatMap(this::handleMessage), lanes.getParallelism());
+        }
+        return routedStream.groupBy(lanes::laneOf).flatMap(lane -> lane.publishOn(lanes.getScheduler()).concatMap(msg -> handleMessageAsync(msg).flatMap(this::acknowledgeHandled)), lanes.getParallelism());
+    }
 
-        this.messageStream = connectableStream;
-        this.deliverMessageDispose = connectableStream.connect();
+    private Flux<List<StompFrame>> handleBatches(Flux<StompFrame> routedStream)
+    {
+        if (partitionConfig == null)
+        {
+            return batch(routedStream).concatMap(this::handleMessages);
+        }
+        StompPartitionConfig lanes = partitionConfig;
+        return routedStream.groupBy(lanes::laneOf).flatMap(lane -> batch(lane.publishOn(lanes.getScheduler())).concatMap(this::handleMessages), lanes.getParallelism());
+    }
+
+    // Without a max latency a batch is only closed once full or when the stream ends
+    private Flux<List<StompFrame>> batch(Flux<StompFrame> frames)
+    {
+        return maxBatchLatency == null ? frames.buffer(maxBatchSize) : frames.bufferTimeout(maxBatchSize, maxBatchLatency);
+    }
+
+    // Acks are sent from the lane handling the message, which only fits acknowledging messages individually
+    @Override
+    public void registerPartitioning(StompPartitionConfig partitionConfig)
+    {
+        if (this.partitionConfig != null)
+        {
+            return;
+        }
+        if (getAckMode() == StompAckMode.CLIENT)
+        {
+            throw new IllegalStateException("Partitioned processing can not be used with cumulative acks of ack mode " + StompAckMode.CLIENT);
+        }
+        this.partitionConfig = partitionConfig;
+    }
+
+    public void registerPartitioning(String headerName, int parallelism)
+    {
+        registerPartitioning(new StompPartitionConfig(frame -> frame.getHeaders() == null ? null : frame.getHeaders().get(headerName), parallelism));
+    }
+
+    @Override
+    public Flux<StompFrame> registerTransactionRoute(String transactionId)
+    {
+        return transactionRouter.register(transactionId);
+    }
+
+    @Override
+    public void deregisterTransactionRoute(String transactionId)
+    {
+        transactionRouter.deregister(transactionId);
+    }
+
+    // Takes effect from the next connectDeliverMessage, without it frames are handled on the thread routing them
+    public void registerDeliveryQueue(StompDeliveryQueueConfig deliveryQueueConfig)
+    {
+        if (this.deliveryQueueConfig != null)
+        {
+            return;
+        }
+        // a dropped or superseded frame would be acknowledged by the next cumulative ACK and never be redelivered
+        if (deliveryQueueConfig.isLossy() && getAckMode() == StompAckMode.CLIENT)
+        {
+            throw new IllegalStateException("A delivery queue that drops or conflates frames can not be used with cumulative acks of ack mode " + StompAckMode.CLIENT + ": " + deliveryQueueConfig);
+        }
+        this.deliveryQueueConfig = deliveryQueueConfig;
+    }
+
+    // Keeps only the latest pending frame per value of the header, for snapshot like topics where older frames are stale.
+    // Superseded frames are acked in ack mode CLIENT_INDIVIDUAL. Once maxKeys keys are pending, the oldest pending frame
+    // is dropped for a new key rather than blocking the connection.
+    public void registerConflation(String headerName, int maxKeys)
+    {
+        registerConflation(frame -> frame.getHeaders() == null ? null : frame.getHeaders().get(headerName), maxKeys);
+    }
+
+    public void registerConflation(Function<StompFrame, ?> conflationKey, int maxKeys)
+    {
+        registerDeliveryQueue(new StompDeliveryQueueConfig(maxKeys, StompOverflowStrategy.DROP_OLDEST, null, conflationKey));
+    }
+
+    // Depth and drop counters of the queue feeding the current delivery stream, null without a delivery queue
+    public StompDeliveryQueue getDeliveryQueue()
+    {
+        return deliveryQueue;
+    }
+
+    // Frames are handed to the batch response handler in batches of up to maxBatchSize, a batch is closed early once
+    // its first frame waited maxBatchLatency, a null latency only closes full batches. The handler's result acks or nacks
+    // the whole batch. Takes effect from the next connectDeliverMessage.
+    public void registerBatchDelivery(int maxBatchSize, Duration maxBatchLatency)
+    {
+        if (this.maxBatchSize > 0)
+        {
+            return;
+        }
+        if (maxBatchSize <= 0)
+        {
+            throw new IllegalArgumentException("Max batch size must be positive: " + maxBatchSize);
+        }
+        if (maxBatchLatency != null && (maxBatchLatency.isNegative() || maxBatchLatency.isZero()))
+        {
+            throw new IllegalArgumentException("Max batch latency must be positive: " + maxBatchLatency);
+        }
+        if (asyncResponseAckHandler != null)
+        {
+            throw new IllegalStateException("Batch delivery can not be combined with an async response handler");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchLatency = maxBatchLatency;
+    }
+
+    public void registerBatchResponseHandler(IStompBatchResponseHandler batchResponseHandler)
+    {
+        if (this.batchResponseAckHandler != null)
+        {
+            return;
+        }
+        this.batchResponseAckHandler = batchResponseHandler;
+    }
+
+    // Only the latest ack id is sent, once per maxPendingAcks acked messages or maxDelay, see StompAckCoalescer. Pending
+    // acks are flushed before a NACK, an UNSUBSCRIBE or a DISCONNECT sent through this subscription.
+    public void registerAckCoalescing(int maxPendingAcks, Duration maxDelay)
+    {
+        if (this.ackCoalescer != null)
+        {
+            return;
+        }
+        if (getAckMode() != StompAckMode.CLIENT)
+        {
+            throw new IllegalStateException("Ack coalescing relies on the cumulative acks of ack mode " + StompAckMode.CLIENT + ", not " + getAckMode());
+        }
+        this.ackCoalescer = new StompAckCoalescer(maxPendingAcks, maxDelay, ackId -> sendAck(StompFrameType.ACK, ackId));
+    }
+
+    // Replaces the response handler, up to maxInFlight messages are handled at the same time and each is acked once its
+    // handler completes. Takes effect from the next connectDeliverMessage.
+    public void registerAsyncResponseHandler(IStompAsyncResponseHandler asyncResponseHandler, int maxInFlight)
+    {
+        if (this.asyncResponseAckHandler != null)
+        {
+            return;
+        }
+        if (maxInFlight <= 0)
+        {
+            throw new IllegalArgumentException("Max in flight must be positive: " + maxInFlight);
+        }
+        if (maxBatchSize > 0)
+        {
+            throw new IllegalStateException("An async response handler can not be combined with batch delivery");
+        }
+        this.asyncResponseAckHandler = asyncResponseHandler;
+        this.maxAsyncInFlight = maxInFlight;
+    }
+
+    // At most maxUnacked messages are handled and not yet acknowledged, later ones wait in the route for acks to free the
+    // window. An ack handed to the ack coalescer frees its slot right away, as does a STOMP 1.0 message left unacked after
+    // its handler failed. The broker specific prefetch headers of SUBSCRIBE can be set from the same limit, so the broker
+    // holds back too. Takes effect from the next connectDeliverMessage.
+    public void registerPrefetchWindow(int maxUnacked, boolean brokerPrefetchHeaders)
+    {
+        if (this.maxUnacked > 0)
+        {
+            return;
+        }
+        if (getAckMode() == StompAckMode.AUTO)
+        {
+            throw new IllegalStateException("Messages of ack mode " + StompAckMode.AUTO + " are never acknowledged by the client");
+        }
+        if (maxUnacked <= 0)
+        {
+            throw new IllegalArgumentException("Max unacked must be positive: " + maxUnacked);
+        }
+        this.maxUnacked = maxUnacked;
+        this.brokerPrefetchHeaders = brokerPrefetchHeaders;
+    }
+
+    // Redelivered messages that were already handled are dropped, and acked, before reaching the handlers. The handled
+    // ids outlive reconnects, so redeliveries after a reconnect are recognized too.
+    public void registerDeduplication(StompDeduplicationConfig deduplicationConfig)
+    {
+        if (this.deduplicator != null)
+        {
+            return;
+        }
+        this.deduplicator = new StompDeduplicator(deduplicationConfig);
+    }
+
+    // Duplicate hits and remembered ids, null without deduplication
+    public StompDeduplicator getDeduplicator()
+    {
+        return deduplicator;
+    }
+
+    // Unacknowledged messages of the current delivery stream, null without a prefetch window
+    public StompPrefetchWindow getPrefetchWindow()
+    {
+        return prefetchWindow;
+    }
+
+    public IStompAsyncResponseHandler getAsyncResponseAckHandler()
+    {
+        return asyncResponseAckHandler;
+    }
+
+    public IStompBatchResponseHandler getBatchResponseAckHandler()
+    {
+        return batchResponseAckHandler;
+    }
+
+    // Handled batches, null unless batch delivery is registered
+    public Flux<List<StompFrame>> deliverBatchStream()
+    {
+        return batchStream;
     }
 
     public IStompResponseHandler getResponseAckHandler()
@@ -188,11 +489,22 @@ public abstract class StompSubscriptionBase<StompConnectConfig extends IStompCon
             return null;
         }
 
-        receiptId = sendStompMessage(new StompFrame(null, null, StompFrameType.SUBSCRIBE, null), receiptId);
+        // Registered before SUBSCRIBE is sent so messages arriving ahead of the receipt are buffered, not lost
+        registerRoute();
+        Mono<StompFrame> receipt = waitReceipt(receiptId);
+        try
+        {
+            receiptId = sendStompMessage(new StompFrame(null, null, StompFrameType.SUBSCRIBE, null), receiptId);
+        }
+        catch (Throwable e)
+        {
+            deregisterRoute();
+            throw e;
+        }
 
         if (receiptId != null)
         {
-            waitReceipt(receiptId).subscribe(frame -> setSubscribed(), err -> setUnsubscribed(), this::setUnsubscribed);
+            receipt.subscribe(frame -> setSubscribed(), err -> setUnsubscribed());
         }
         else
         {
@@ -210,11 +522,12 @@ public abstract class StompSubscriptionBase<StompConnectConfig extends IStompCon
             return null;
         }
 
+        Mono<StompFrame> receipt = waitReceipt(receiptId);
         receiptId = sendStompMessage(new StompFrame(null, null, StompFrameType.UNSUBSCRIBE, null), receiptId);
 
         if (receiptId != null)
         {
-            waitReceipt(receiptId).subscribe(frame -> setUnsubscribed(), err -> setUnsubscribed(), this::setUnsubscribed);
+            receipt.subscribe(frame -> setUnsubscribed(), err -> setUnsubscribed());
         }
         else
         {
@@ -236,6 +549,7 @@ public abstract class StompSubscriptionBase<StompConnectConfig extends IStompCon
         {
             return;
         }
+        deliverMessageDisconnecting = true;
         deliverMessageDispose.dispose();
     }
 
@@ -264,6 +578,8 @@ public abstract class StompSubscriptionBase<StompConnectConfig extends IStompCon
     {
         disconnectDeliverMessage();
 
+        deregisterRoute();
+
         setSubscriptionStatus(StompSubscriptionStatus.UNSUBSCRIBED);
     }
 
@@ -273,4 +589,243 @@ public abstract class StompSubscriptionBase<StompConnectConfig extends IStompCon
 
         setSubscriptionStatus(StompSubscriptionStatus.SUBSCRIBED);
     }
+
+    // Acks the message with the given ack id, going through the ack coalescer when registered
+    protected void ack(String ackId) throws Throwable
+    {
+        if (ackCoalescer != null)
+        {
+            ackCoalescer.ack(ackId);
+            // the coalescer may hold the ack until more messages are acked, which must not wait for the window
+            releasePrefetch(ackId);
+            return;
+        }
+        sendAck(StompFrameType.ACK, ackId);
+    }
+
+    // Frees the window slot of the message without waiting for its ACK or NACK to be sent
+    protected void releasePrefetch(String ackId)
+    {
+        if (prefetchWindow != null && ackId != null)
+        {
+            prefetchWindow.acked(ackId, getAckMode() == StompAckMode.CLIENT);
+        }
+    }
+
+    protected void flushAcks() throws Throwable
+    {
+        if (ackCoalescer != null)
+        {
+            ackCoalescer.flush();
+        }
+    }
+
+    protected void sendAck(StompFrameType frameType, String ackId) throws Throwable
+    {
+        sendStompMessage(createAckFrame(frameType, ackId), null);
+        if (prefetchWindow != null)
+        {
+            prefetchWindow.acked(ackId, getAckMode() == StompAckMode.CLIENT);
+        }
+    }
+
+    protected abstract StompFrame createAckFrame(StompFrameType frameType, String ackId);
+
+    // The id an ACK or NACK of the message refers to
+    protected abstract String getAckId(StompFrame msg);
+
+    // Acks or nacks the message according to the result of its response handler, returns whether it was handled
+    protected abstract boolean acknowledge(StompFrame msg, Throwable handledResult) throws Throwable;
+
+    private Mono<StompFrame> handleMessage(StompFrame msg)
+    {
+        try
+        {
+            if (isOrderedDuplicate(msg))
+            {
+                ackDuplicate(msg);
+                return Mono.empty();
+            }
+            return ackMessage(msg) ? handled(msg) : Mono.empty();
+        }
+        catch (Throwable e)
+        {
+            return Mono.error(e);
+        }
+    }
+
+    private Mono<HandledMessage> handleMessageAsync(StompFrame msg)
+    {
+        if (isOrderedDuplicate(msg))
+        {
+            return Mono.just(new HandledMessage(msg, null, true));
+        }
+        return Mono.defer(() -> asyncResponseAckHandler.handleStompResponse(msg)).then(Mono.fromCallable(() -> new HandledMessage(msg, null, false))).onErrorResume(e -> Mono.just(new HandledMessage(msg, e, false)));
+    }
+
+    private Mono<StompFrame> acknowledgeHandled(HandledMessage handled)
+    {
+        try
+        {
+            if (handled.duplicate)
+            {
+                ackDuplicate(handled.msg);
+                return Mono.empty();
+            }
+            return acknowledge(handled.msg, handled.result) ? handled(handled.msg) : Mono.empty();
+        }
+        catch (Throwable e)
+        {
+            return Mono.error(e);
+        }
+    }
+
+    private Mono<List<StompFrame>> handleMessages(List<StompFrame> msgs)
+    {
+        try
+        {
+            List<StompFrame> freshMsgs = new ArrayList<>(msgs.size());
+            for (StompFrame msg : msgs)
+            {
+                if (!isOrderedDuplicate(msg))
+                {
+                    freshMsgs.add(msg);
+                }
+            }
+            if (!freshMsgs.isEmpty() && !ackMessages(freshMsgs))
+            {
+                return Mono.empty();
+            }
+            // the batch's ACK only reaches its last fresh message, a duplicate after it is acked on its own
+            StompFrame last = msgs.get(msgs.size() - 1);
+            if (freshMsgs.isEmpty() || freshMsgs.get(freshMsgs.size() - 1) != last)
+            {
+                ackDuplicate(last);
+            }
+            for (StompFrame msg : freshMsgs)
+            {
+                handled(msg);
+            }
+            return freshMsgs.isEmpty() ? Mono.empty() : Mono.just(freshMsgs);
+        }
+        catch (Throwable e)
+        {
+            return Mono.error(e);
+        }
+    }
+
+    // Only handled messages are remembered, a message that failed must still be handled when it is redelivered
+    private Mono<StompFrame> handled(StompFrame msg)
+    {
+        if (deduplicator != null)
+        {
+            deduplicator.remember(msg);
+        }
+        return Mono.just(msg);
+    }
+
+    // Duplicates skip the handler but are acked in the order they arrived, see connectDeliverMessage
+    private boolean isOrderedDuplicate(StompFrame msg)
+    {
+        return deduplicator != null && getAckMode() == StompAckMode.CLIENT && deduplicator.isDuplicate(msg);
+    }
+
+    private void ackDuplicate(StompFrame msg) throws Throwable
+    {
+        String ackId = getAckId(msg);
+        if (ackId != null)
+        {
+            ack(ackId);
+        }
+    }
+
+    // A superseded frame is never handled, it is acknowledged so it does not hold the broker's prefetch
+    private void ackSuperseded(StompFrame msg)
+    {
+        String ackId = getAckId(msg);
+        if (ackId == null)
+        {
+            return;
+        }
+        try
+        {
+            sendAck(StompFrameType.ACK, ackId);
+        }
+        catch (Throwable e)
+        {
+            // the connection is gone, the broker redelivers the frame
+        }
+    }
+
+    private Mono<StompFrame> dropDuplicate(StompFrame msg)
+    {
+        if (!deduplicator.isDuplicate(msg))
+        {
+            return Mono.just(msg);
+        }
+        if (getAckMode() == StompAckMode.CLIENT_INDIVIDUAL && getAckId(msg) != null)
+        {
+            try
+            {
+                sendAck(StompFrameType.ACK, getAckId(msg));
+            }
+            catch (Throwable e)
+            {
+                return Mono.error(e);
+            }
+        }
+        return Mono.empty();
+    }
+
+    // A failed delivery stream, e.g. an overflowed delivery queue with strategy FAIL, handles nothing anymore, so the
+    // broker is told to stop sending and the subscription ends. Subscribers of the delivery stream see the failure.
+    private void failSubscription(Throwable t)
+    {
+        if (getSubscriptionStatus() != StompSubscriptionStatus.SUBSCRIBED)
+        {
+            return;
+        }
+        try
+        {
+            unsubscribe(null);
+        }
+        catch (Throwable e)
+        {
+            // the connection is gone too, the broker forgets the subscription with it
+            setUnsubscribed();
+        }
+    }
+
+    protected synchronized Flux<StompFrame> registerRoute()
+    {
+        if (routedMessageStream == null)
+        {
+            routedMessageStream = getDelegatee().registerSubscriptionRoute(getSubscriptionId(), getDestination());
+        }
+        return routedMessageStream;
+    }
+
+    protected synchronized void deregisterRoute()
+    {
+        if (routedMessageStream == null)
+        {
+            return;
+        }
+        routedMessageStream = null;
+        getDelegatee().deregisterSubscriptionRoute(getSubscriptionId(), getDestination());
+    }
+
+    private static final class HandledMessage
+    {
+        private final StompFrame msg;
+        private final Throwable  result;
+        private final boolean    duplicate;
+
+        HandledMessage(StompFrame msg, Throwable result, boolean duplicate)
+        {
+            this.msg = msg;
+            this.result = result;
+            this.duplicate = duplicate;
+        }
+    }
 }
@@ -5,9 +5,10 @@ import com.connector.common.stomp.constant.StompFrameType;
 import com.connector.common.stomp.constant.StompHeaders;
 import com.connector.common.stomp.internal.config.StompConnectConfigV10;
 import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompHeaderMap;
 import com.connector.common.stomp.internal.model.StompSessionInfoV10;
 
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class StompSubscriptionBaseV10<StompConnectConfig extends StompConnectConfigV10, StompDisconnectConfig, StompSessionInfo extends StompSessionInfoV10, TransportPayload> extends StompSubscriptionBase<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload>
@@ -20,7 +21,6 @@ public class StompSubscriptionBaseV10<StompConnectConfig extends StompConnectCon
     @Override
     public boolean ackMessage(StompFrame msg) throws Throwable
     {
-        Map<String, String> msgHeaders = msg.getHeaders();
         Throwable handledResult = null;
         if (getResponseAckHandler() != null)
         {
@@ -33,23 +33,92 @@ public class StompSubscriptionBaseV10<StompConnectConfig extends StompConnectCon
                 handledResult = e;
             }
         }
+        return acknowledge(msg, handledResult);
+    }
 
+    @Override
+    protected boolean acknowledge(StompFrame msg, Throwable handledResult) throws Throwable
+    {
         if (getAckMode() == StompAckMode.AUTO)
         {
             return true;
         }
 
-        if (msgHeaders.get(StompHeaders.MESSAGE_ID) != null)
+        Map<String, String> msgHeaders = msg.getHeaders();
+
+        String messageId = msgHeaders.get(StompHeaders.MESSAGE_ID);
+        if (messageId != null)
         {
-            if (handledResult != null)
+            // 1.0 has no NACK, a message the handler failed on is left unacknowledged for the broker to redeliver. Its
+            // window slot is freed all the same, or enough failures in a row would hold back every later message.
+            if (handledResult == null)
             {
-                Map<String, String> ackHeader = new LinkedHashMap<>();
-                ackHeader.put(StompHeaders.MESSAGE_ID, msgHeaders.get(StompHeaders.MESSAGE_ID));
-                sendStompMessage(new StompFrame(ackHeader, null, StompFrameType.ACK, null), null);
+                ack(messageId);
                 return true;
             }
+            releasePrefetch(messageId);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean ackMessages(List<StompFrame> msgs) throws Throwable
+    {
+        Throwable handledResult = null;
+        if (getBatchResponseAckHandler() != null)
+        {
+            try
+            {
+                handledResult = getBatchResponseAckHandler().handleStompResponses(msgs);
+            }
+            catch (Throwable e)
+            {
+                handledResult = e;
+            }
+        }
+
+        if (getAckMode() == StompAckMode.AUTO)
+        {
+            return true;
+        }
+        if (handledResult != null)
+        {
+            for (StompFrame msg : msgs)
+            {
+                releasePrefetch(msg.getHeaders().get(StompHeaders.MESSAGE_ID));
+            }
             return false;
         }
+
+        // In client mode an ACK also covers every earlier message, so only the last message of the batch is acked
+        for (int i = msgs.size() - 1; i >= 0; i--)
+        {
+            String messageId = msgs.get(i).getHeaders().get(StompHeaders.MESSAGE_ID);
+            if (messageId == null)
+            {
+                continue;
+            }
+            ack(messageId);
+            if (getAckMode() == StompAckMode.CLIENT)
+            {
+                break;
+            }
+        }
         return true;
     }
+
+    @Override
+    protected StompFrame createAckFrame(StompFrameType frameType, String messageId)
+    {
+        Map<String, String> ackHeader = new StompHeaderMap();
+        ackHeader.put(StompHeaders.MESSAGE_ID, messageId);
+        return new StompFrame(ackHeader, null, frameType, null);
+    }
+
+    @Override
+    protected String getAckId(StompFrame msg)
+    {
+        return msg.getHeaders().get(StompHeaders.MESSAGE_ID);
+    }
 }
@@ -4,9 +4,11 @@ import com.connector.common.stomp.constant.StompAckMode;
 import com.connector.common.stomp.constant.StompFrameType;
 import com.connector.common.stomp.constant.StompHeaders;
 import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompHeaderMap;
 import com.connector.common.stomp.internal.model.StompSessionInfoV11;
 
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class StompSubscriptionBaseV11<StompConnectConfig extends IStompConnectConfig, StompDisconnectConfig, StompSessionInfo extends StompSessionInfoV11, TransportPayload> extends StompSubscriptionBase<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, TransportPayload>
@@ -19,7 +21,6 @@ public class StompSubscriptionBaseV11<StompConnectConfig extends IStompConnectCo
     @Override
     public boolean ackMessage(StompFrame msg) throws Throwable
     {
-        Map<String, String> msgHeaders = msg.getHeaders();
         Throwable handledResult = null;
         if (getResponseAckHandler() != null)
         {
@@ -32,32 +33,104 @@ public class StompSubscriptionBaseV11<StompConnectConfig extends IStompConnectCo
                 handledResult = e;
             }
         }
+        return acknowledge(msg, handledResult);
+    }
 
+    @Override
+    protected boolean acknowledge(StompFrame msg, Throwable handledResult) throws Throwable
+    {
         if (getAckMode() == StompAckMode.AUTO)
         {
             return true;
         }
 
-        if (msgHeaders.get(StompHeaders.ACK) != null)
+        Map<String, String> msgHeaders = msg.getHeaders();
+
+        String ackId = msgHeaders.get(StompHeaders.ACK);
+        if (ackId != null)
+        {
+            if (handledResult != null)
+            {
+                // a cumulative NACK must not cover messages whose ACK is still held back
+                flushAcks();
+                sendAck(StompFrameType.NACK, ackId);
+                return false;
+            }
+            ack(ackId);
+            return true;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean ackMessages(List<StompFrame> msgs) throws Throwable
+    {
+        Throwable handledResult = null;
+        if (getBatchResponseAckHandler() != null)
+        {
+            try
+            {
+                handledResult = getBatchResponseAckHandler().handleStompResponses(msgs);
+            }
+            catch (Throwable e)
+            {
+                handledResult = e;
+            }
+        }
+
+        if (getAckMode() == StompAckMode.AUTO)
         {
-            Map<String, String> ackHeader = new LinkedHashMap<>();
-            ackHeader.put(StompHeaders.ID, msgHeaders.get(StompHeaders.ACK));
+            return true;
+        }
 
-            StompFrameType frameType;
-            boolean result;
+        // In client mode an ACK or NACK also covers every earlier message, so the last message stands for the batch
+        List<StompFrame> ackedMsgs = getAckMode() == StompAckMode.CLIENT ? lastAckable(msgs) : msgs;
+        if (handledResult != null)
+        {
+            flushAcks();
+        }
+        for (StompFrame msg : ackedMsgs)
+        {
+            String ackId = msg.getHeaders().get(StompHeaders.ACK);
+            if (ackId == null)
+            {
+                continue;
+            }
             if (handledResult != null)
             {
-                frameType = StompFrameType.NACK;
-                result = false;
+                sendAck(StompFrameType.NACK, ackId);
             }
             else
             {
-                frameType = StompFrameType.ACK;
-                result = true;
+                ack(ackId);
             }
-            sendStompMessage(new StompFrame(ackHeader, null, frameType, null), null);
-            return result;
         }
-        return true;
+        return handledResult == null;
+    }
+
+    @Override
+    protected StompFrame createAckFrame(StompFrameType frameType, String ackId)
+    {
+        Map<String, String> ackHeader = new StompHeaderMap();
+        ackHeader.put(StompHeaders.ID, ackId);
+        return new StompFrame(ackHeader, null, frameType, null);
+    }
+
+    @Override
+    protected String getAckId(StompFrame msg)
+    {
+        return msg.getHeaders().get(StompHeaders.ACK);
+    }
+
+    private static List<StompFrame> lastAckable(List<StompFrame> msgs)
+    {
+        for (int i = msgs.size() - 1; i >= 0; i--)
+        {
+            if (msgs.get(i).getHeaders().get(StompHeaders.ACK) != null)
+            {
+                return Collections.singletonList(msgs.get(i));
+            }
+        }
+        return Collections.emptyList();
     }
 }
@@ -0,0 +1,161 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.internal.codec.StompFrameEncoder;
+import com.connector.common.stomp.internal.config.StompWriteCoalescingConfig;
+import com.connector.common.websocket.client.base.IWSClient;
+import com.connector.common.websocket.constant.WSRawMessageType;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+import okio.Buffer;
+import reactor.core.Disposable;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Packs encoded frames into a single websocket message, which stomp over websocket brokers split again, so frames
+// written in bursts share the websocket framing, masking and writer wake up. Frames are held until maxBytes are pending
+// or maxDelay passed since the first of them. With flushWhenIdle a write goes out right away, together with the frames
+// pending before it, whenever the socket has nothing queued. Frames are concatenated as text unless one of them is
+// binary. A failed delayed flush can not reach the broker on that socket anymore, so its frames are dropped and the
+// failure is logged and thrown from the next write or flush, telling the writers that their frames were lost.
+public class StompWriteCoalescer
+{
+    private static final Logger LOGGER = Loggers.getLogger(StompWriteCoalescer.class);
+
+    private final IWSClient<?, ?>            wsClient;
+    private final StompWriteCoalescingConfig config;
+    private final List<WSRawMessage>         pendingMessages;
+
+    private int        pendingBytes;
+    private boolean    pendingBinary;
+    private Disposable scheduledFlush;
+    private Throwable  flushFailure;
+
+    public StompWriteCoalescer(IWSClient<?, ?> wsClient, StompWriteCoalescingConfig config)
+    {
+        this.wsClient = wsClient;
+        this.config = config;
+        this.pendingMessages = new ArrayList<>();
+    }
+
+    public synchronized void write(WSRawMessage message) throws Throwable
+    {
+        if (message == null)
+        {
+            return;
+        }
+        throwFlushFailure();
+        boolean idle = config.isFlushWhenIdle() && wsClient.queueSize() == 0;
+        if (idle && pendingMessages.isEmpty())
+        {
+            wsClient.sendMessage(message);
+            return;
+        }
+        pendingMessages.add(message);
+        if (message.getType() == WSRawMessageType.BINARY)
+        {
+            pendingBinary = true;
+            pendingBytes += message.getByteString().size();
+        }
+        else
+        {
+            pendingBytes += Math.toIntExact(StompFrameEncoder.utf8Length(message.getStringData()));
+        }
+        // the socket drained while frames were pending
+        if (idle || pendingBytes >= config.getMaxBytes())
+        {
+            sendPending();
+            return;
+        }
+        if (scheduledFlush == null)
+        {
+            scheduledFlush = config.getScheduler().schedule(this::flushScheduled, config.getMaxDelay().toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public synchronized void flush() throws Throwable
+    {
+        throwFlushFailure();
+        sendPending();
+    }
+
+    public synchronized int getPendingBytes()
+    {
+        return pendingBytes;
+    }
+
+    private void sendPending() throws Throwable
+    {
+        if (scheduledFlush != null)
+        {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+        if (pendingMessages.isEmpty())
+        {
+            return;
+        }
+        WSRawMessage message = pendingMessages.size() == 1 ? pendingMessages.get(0) : concat();
+        try
+        {
+            wsClient.sendMessage(message);
+        }
+        finally
+        {
+            pendingMessages.clear();
+            pendingBytes = 0;
+            pendingBinary = false;
+        }
+    }
+
+    private void throwFlushFailure()
+    {
+        if (flushFailure != null)
+        {
+            Throwable failure = flushFailure;
+            flushFailure = null;
+            throw new IllegalStateException("Frames held back by the write coalescer were lost, their delayed flush failed", failure);
+        }
+    }
+    private WSRawMessage concat()
+    {
+        if (!pendingBinary)
+        {
+            StringBuilder text = new StringBuilder(pendingBytes);
+            for (WSRawMessage message : pendingMessages)
+            {
+                text.append(message.getStringData());
+            }
+            return WSRawMessage.text(text.toString());
+        }
+        Buffer octets = new Buffer();
+        for (WSRawMessage message : pendingMessages)
+        {
+            if (message.getType() == WSRawMessageType.BINARY)
+            {
+                octets.write(message.getByteString());
+            }
+            else
+            {
+                octets.writeUtf8(message.getStringData());
+            }
+        }
+        return WSRawMessage.binary(octets.readByteString());
+    }
+
+    private synchronized void flushScheduled()
+    {
+        scheduledFlush = null;
+        try
+        {
+            sendPending();
+        }
+        catch (Throwable e)
+        {
+            LOGGER.warn("Delayed flush of the write coalescer failed, its frames were dropped", e);
+            flushFailure = e;
+        }
+    }
+}
@@ -3,8 +3,16 @@ package com.connector.common.stomp.client.base;
 import com.connector.common.stomp.constant.StompConnectionStatus;
 import com.connector.common.stomp.constant.StompFrameType;
 import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.constant.StompOverflowStrategy;
+import com.connector.common.stomp.internal.codec.StompFrameAccumulator;
+import com.connector.common.stomp.internal.codec.StompFrameDecoder;
+import com.connector.common.stomp.internal.codec.StompFrameEncoder;
+import com.connector.common.stomp.internal.codec.StompHeaderValueCache;
+import com.connector.common.stomp.internal.config.StompDeliveryQueueConfig;
+import com.connector.common.stomp.internal.config.StompWriteCoalescingConfig;
 import com.connector.common.stomp.internal.exception.StompErrorFrame;
 import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompHeaderMap;
 import com.connector.common.websocket.client.base.IWSClient;
 import com.connector.common.websocket.constant.WSLifecycle;
 import com.connector.common.websocket.constant.WSStatus;
@@ -16,23 +24,36 @@ import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 import reactor.core.publisher.Sinks.Many;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public abstract class WSStompClientBase<StompConnectConfig extends IStompConnectConfig, StompDisconnectConfig, StompSessionInfo extends IStompSessionInfo> implements IStompClient<StompConnectConfig, StompDisconnectConfig, StompSessionInfo, WSRawMessage>
 {
-    private final String                      stompClientId;
-    private final IWSClient<?, ?>             wsClient;
-    private final Many<StompConnectionStatus> connectionStatusPublisher;
-
-    private IStompRequestHandler  additionalRequestHandler;
-    private StompConnectionStatus connectionStatus;
-    private Flux<StompFrame>      messageStream;
-    private Disposable            deliverMessageDispose;
+    private final String                        stompClientId;
+    private final IWSClient<?, ?>               wsClient;
+    private final Many<StompConnectionStatus>   connectionStatusPublisher;
+    private final StompFrameEncoder             frameEncoder;
+    private final StompFrameRouter              subscriptionRouter;
+    private final StompFrameRouter              destinationRouter;
+    private final StompFrameRouter              transactionRouter;
+    private final StompReceiptTable             receiptTable;
+    private final List<IStompDisconnectHandler> disconnectHandlers;
+
+    private IStompRequestHandler     additionalRequestHandler;
+    private StompHeaderValueCache    headerValueCache;
+    private Duration                 receiptTimeout;
+    private StompFrameDecoder        frameDecoder;
+    private StompConnectionStatus    connectionStatus;
+    private Flux<StompFrame>         messageStream;
+    private Disposable               deliverMessageDispose;
+    private StompDeliveryQueueConfig dispatchConfig;
+    private StompDeliveryQueue       dispatchQueue;
+    private StompWriteCoalescer      writeCoalescer;
 
     private StompSessionInfo sessionInfo;
 
@@ -41,6 +62,13 @@ public abstract class WSStompClientBase<StompConnectConfig extends IStompConnect
         this.stompClientId = stompClientId;
         this.wsClient = wsClient;
         this.connectionStatusPublisher = Sinks.many().replay().latest();
+        this.frameDecoder = new StompFrameDecoder();
+        this.frameEncoder = new StompFrameEncoder();
+        this.subscriptionRouter = new StompFrameRouter();
+        this.destinationRouter = new StompFrameRouter();
+        this.transactionRouter = new StompFrameRouter();
+        this.receiptTable = new StompReceiptTable();
+        this.disconnectHandlers = new CopyOnWriteArrayList<>();
         connectionStatusPublisher.tryEmitNext(StompConnectionStatus.UNINITIALIZED).orThrow();
         connectionStatusStream().subscribe(status -> this.connectionStatus = status);
         getWsClient().socketStatusStream().doOnNext(status -> {
@@ -73,8 +101,29 @@ public abstract class WSStompClientBase<StompConnectConfig extends IStompConnect
         {
             msg.getHeaders().put(StompHeaders.RECEIPT, receiptId);
         }
-        WSRawMessage wsRawMessage = encode(msg);
-        sendRawMessage(wsRawMessage);
+        return sendRawMessage(encode(msg), receiptId);
+    }
+
+    @Override
+    public String sendRawMessage(WSRawMessage rawMessage, String receiptId) throws Throwable
+    {
+        if (receiptId != null)
+        {
+            // registered before sending so a fast receipt cannot arrive ahead of its entry, a waiter's own timeout is kept
+            receiptTable.registerDefault(receiptId, receiptTimeout);
+        }
+        try
+        {
+            sendRawMessage(rawMessage);
+        }
+        catch (Throwable e)
+        {
+            if (receiptId != null)
+            {
+                receiptTable.fail(receiptId, e);
+            }
+            throw e;
+        }
 
         return receiptId;
     }
@@ -86,15 +135,57 @@ public abstract class WSStompClientBase<StompConnectConfig extends IStompConnect
         {
             return Mono.empty();
         }
-        return Mono.from(deliverMessageStream().filter(resp -> resp.getType() == StompFrameType.RECEIPT && receiptId.equals(resp.getHeaders().get(StompHeaders.RECEIPT_ID))));
+        return receiptTable.register(receiptId, null);
+    }
+
+    @Override
+    public Mono<StompFrame> waitReceipt(String receiptId, Duration timeout)
+    {
+        if (receiptId == null)
+        {
+            return Mono.empty();
+        }
+        return receiptTable.register(receiptId, timeout);
+    }
+
+    @Override
+    public int getPendingReceiptCount()
+    {
+        return receiptTable.size();
+    }
+
+    // MESSAGE frames that overflowed the route of their subscription, each of them failed that route
+    public long getRouteDroppedCount()
+    {
+        return subscriptionRouter.getDroppedCount() + destinationRouter.getDroppedCount();
     }
 
     @Override
     public void sendRawMessage(WSRawMessage rawMessage) throws Throwable
     {
+        if (writeCoalescer != null)
+        {
+            writeCoalescer.write(rawMessage);
+            return;
+        }
         wsClient.sendMessage(rawMessage);
     }
 
+    @Override
+    public Mono<Void> awaitWritable()
+    {
+        return wsClient.awaitWritable();
+    }
+
+    // Sends the frames held back by the write coalescer, if any
+    public void flushWrites() throws Throwable
+    {
+        if (writeCoalescer != null)
+        {
+            writeCoalescer.flush();
+        }
+    }
+
     @Override
     public String describeClient()
     {
@@ -108,9 +199,8 @@ public abstract class WSStompClientBase<StompConnectConfig extends IStompConnect
         {
             return null;
         }
-        String body = msg.getBody() == null ? "" : msg.getBody();
-        Map<String, String> headerMap = msg.getHeaders() == null ? new LinkedHashMap<>() : msg.getHeaders();
-        headerMap.put(StompHeaders.CONTENT_LENGTH, String.valueOf(body.getBytes(StandardCharsets.UTF_8).length));
+        Map<String, String> headerMap = msg.getHeaders() == null ? new StompHeaderMap() : msg.getHeaders();
+        headerMap.put(StompHeaders.CONTENT_LENGTH, String.valueOf(msg.getContentLength()));
         if (msg.getContentType() != null)
         {
             headerMap.put(StompHeaders.CONTENT_TYPE, msg.getContentType());
@@ -123,6 +213,12 @@ public abstract class WSStompClientBase<StompConnectConfig extends IStompConnect
         return msg;
     }
 
+    @Override
+    public StompFrame prepareRequest(StompFrame msg) throws Throwable
+    {
+        return populateRequest(msg);
+    }
+
     @Override
     public Mono<StompConnectionStatus> waitConnectionStatus(StompConnectionStatus status)
     {
@@ -136,9 +232,7 @@ public abstract class WSStompClientBase<StompConnectConfig extends IStompConnect
         {
             return null;
         }
-        String header = msg.getHeaders().entrySet().stream().map(headerEntry -> headerEntry.getKey() + ":" + headerEntry.getValue() + "\n").collect(Collectors.joining(""));
-        String body = msg.getBody() == null ? "" : msg.getBody();
-        return WSRawMessage.text(msg.getType().toString() + '\n' + header + '\n' + body + '\0');
+        return frameEncoder.encode(msg);
     }
 
     @Override
@@ -152,93 +246,74 @@ public abstract class WSStompClientBase<StompConnectConfig extends IStompConnect
     }
 
     @Override
-    public StompFrame decode(WSRawMessage msg)
+    public void registerDisconnectHandler(IStompDisconnectHandler disconnectHandler)
     {
-        String data;
+        disconnectHandlers.add(disconnectHandler);
+    }
 
-        switch (msg.getType())
+    // Interns the values of the cached headers across decoded frames, see StompHeaderValueCache
+    public void registerHeaderValueCache(StompHeaderValueCache headerValueCache)
+    {
+        if (this.headerValueCache != null)
         {
-        case BINARY:
-            data = new String(msg.getBinaryData(), StandardCharsets.UTF_8);
-            break;
-        case TEXT:
-            data = msg.getStringData();
-            break;
-        default:
-            throw new UnsupportedOperationException("Unknown websocket response type " + msg.getType());
+            return;
         }
+        this.headerValueCache = headerValueCache;
+        this.frameDecoder = new StompFrameDecoder(headerValueCache);
+    }
 
-        if (data.isEmpty() || data.charAt(0) == '\n' || data.charAt(0) == '\0' || data.length() == 2 && data.charAt(0) == '\r' && data.charAt(1) == '\n')
-        {
-            // heartbeat
-            return new StompFrame(Collections.emptyMap(), "\n", StompFrameType.HEARTBEAT, "");
-        }
-        Map<String, String> headers = new LinkedHashMap<>();
-        int lineIndex = data.indexOf("\n");
-        if (lineIndex < 0)
-        {
-            throw new IllegalStateException("Not a valid stomp frame. Reason: missing EOL(LF / CRLF) - " + data);
-        }
-        String frameTypeStr = data.substring(0, removeCR(data, 0, lineIndex));
-        StompFrameType type = StompFrameType.parse(frameTypeStr);
-        if (type == null)
+    // Receipts not received within the timeout fail with a TimeoutException, by default they are awaited until the
+    // connection ends
+    public void registerReceiptTimeout(Duration receiptTimeout)
+    {
+        if (this.receiptTimeout != null)
         {
-            throw new IllegalStateException("Unknown stomp frame type: " + frameTypeStr);
+            return;
         }
-        while (true)
+        this.receiptTimeout = receiptTimeout;
+    }
+
+    // Decoded frames are handed off to the configured scheduler before being dispatched, so routing, response handlers
+    // and acks of every subscription run there instead of on the websocket reader thread. Only MESSAGE frames are
+    // subject to the overflow strategy. Failing or conflating would affect every subscription and every pending receipt,
+    // so neither is accepted here. Takes effect from the next connectDeliverMessage.
+    public void registerDispatch(StompDeliveryQueueConfig dispatchConfig)
+    {
+        if (this.dispatchConfig != null)
         {
-            int startLineIndex = lineIndex + 1;
-            lineIndex = data.indexOf("\n", startLineIndex);
-            if (lineIndex < 0)
-            {
-                throw new IllegalStateException("Not a valid stomp frame. Reason: missing EOL(LF / CRLF) - " + data);
-            }
-            int endLineIndex = removeCR(data, startLineIndex, lineIndex);
-            if (startLineIndex == endLineIndex)
-            {
-                break;
-            }
-            int headerDelimiterIndex = data.indexOf(":", startLineIndex);
-            if (headerDelimiterIndex < 0 || headerDelimiterIndex > endLineIndex)
-            {
-                throw new IllegalStateException("Not a valid stomp frame header should be in the format of <headerKey>:<headerValue>. But is: " + data.substring(startLineIndex, endLineIndex));
-            }
-            headers.computeIfAbsent(data.substring(startLineIndex, headerDelimiterIndex), _k -> {
-                if (trimHeaders())
-                {
-                    return data.substring(headerDelimiterIndex + 1, endLineIndex).trim();
-                }
-                return data.substring(headerDelimiterIndex + 1, endLineIndex);
-            });
+            return;
         }
-        int dataStartIndex = lineIndex + 1;
-        int dataBoundEndIndex = data.lastIndexOf("\0");
-        if (dataBoundEndIndex < 0)
+        if (dispatchConfig.isConflating() || dispatchConfig.getOverflowStrategy() == StompOverflowStrategy.FAIL)
         {
-            throw new IllegalStateException("Not a valid stomp frame. Reason: payload is missing null terminated ('\0')");
+            throw new IllegalArgumentException("The dispatch stage can neither conflate nor fail on overflow: " + dispatchConfig);
         }
-        String rawData = data.substring(dataStartIndex, dataBoundEndIndex);
+        this.dispatchConfig = dispatchConfig;
+    }
 
-        if (headers.containsKey(StompHeaders.CONTENT_LENGTH))
+    // Frames are packed into shared websocket messages, see StompWriteCoalescer. A frame held back fails later than
+    // its sendStompMessage call when the socket is gone by the time it is flushed, the failure is thrown from the next
+    // sendStompMessage or flushWrites.
+    public void registerWriteCoalescing(StompWriteCoalescingConfig writeCoalescingConfig)
+    {
+        if (this.writeCoalescer != null)
         {
-            int contentLength = Integer.parseInt(headers.get(StompHeaders.CONTENT_LENGTH));
-            if (contentLength < 0)
-            {
-                throw new IllegalStateException("Not a valid stomp frame. Reason: invalid content length: " + headers.get(StompHeaders.CONTENT_LENGTH));
-            }
-            byte[] octets = rawData.getBytes(StandardCharsets.UTF_8);
-            if (contentLength > octets.length)
-            {
-                throw new IllegalStateException("Not a valid stomp frame. Reason: content length " + contentLength + " exceeds payload length " + octets.length);
-            }
-            if (octets.length != contentLength)
-            {
-                byte[] dest = new byte[contentLength];
-                rawData = new String(dest, 0, contentLength, StandardCharsets.UTF_8);
-            }
+            return;
         }
+        this.writeCoalescer = new StompWriteCoalescer(wsClient, writeCoalescingConfig);
+    }
 
-        return new StompFrame(headers, rawData, type, headers.get(StompHeaders.CONTENT_TYPE));
+    // Occupancy and hand-off latency of the dispatch stage, null without one
+    public StompDeliveryQueue getDispatchQueue()
+    {
+        return dispatchQueue;
+    }
+
+    // Decodes a message holding exactly one frame. Received messages may hold several frames or part of one, so the
+    // receive path decodes them with decodeReceived instead, which is what to override to change inbound decoding.
+    @Override
+    public StompFrame decode(WSRawMessage msg)
+    {
+        return frameDecoder.decode(toBuffer(msg), trimHeaders());
     }
 
     @Override
@@ -249,26 +324,58 @@ public abstract class WSStompClientBase<StompConnectConfig extends IStompConnect
             return;
         }
 
-        ConnectableFlux<StompFrame> connectableStream = wsClient.responseStream().filter(resp -> resp.getLifecycle() == WSLifecycle.MESSAGE).flatMap(resp -> {
-            try
-            {
-                StompFrame frame = decode(resp.getBody());
-                if (frame.getType() == StompFrameType.ERROR)
-                {
-                    return Mono.error(new StompErrorFrame(frame, "Error frame received from server"));
-                }
-                return Mono.just(frame);
-            }
-            catch (Throwable e)
+        // A websocket message may carry several frames or only part of one, see StompFrameAccumulator
+        StompFrameAccumulator frameAccumulator = new StompFrameAccumulator(frameDecoder, trimHeaders());
+        Flux<StompFrame> frameStream = wsClient.responseStream().filter(resp -> resp.getLifecycle() == WSLifecycle.MESSAGE).flatMapIterable(resp -> decodeReceived(frameAccumulator, resp.getBody()));
+        if (dispatchConfig != null)
+        {
+            dispatchQueue = new StompDeliveryQueue(describeClient(), dispatchConfig);
+            frameStream = dispatchQueue.connect(frameStream);
+        }
+        ConnectableFlux<StompFrame> connectableStream = frameStream.flatMap(frame -> {
+            if (frame.getType() == StompFrameType.ERROR)
             {
-                return Mono.error(e);
+                return Mono.error(new StompErrorFrame(frame, "Error frame received from server"));
             }
+            return Mono.just(frame);
         }).publish();
+        connectableStream.subscribe(this::dispatchFrame, this::failRoutes, this::completeRoutes);
 
         this.messageStream = connectableStream;
         this.deliverMessageDispose = connectableStream.connect();
     }
 
+    @Override
+    public Flux<StompFrame> registerSubscriptionRoute(String subscriptionId, String destination)
+    {
+        return subscriptionId != null ? subscriptionRouter.register(subscriptionId) : destinationRouter.register(destination);
+    }
+
+    @Override
+    public void deregisterSubscriptionRoute(String subscriptionId, String destination)
+    {
+        if (subscriptionId != null)
+        {
+            subscriptionRouter.deregister(subscriptionId);
+        }
+        else
+        {
+            destinationRouter.deregister(destination);
+        }
+    }
+
+    @Override
+    public Flux<StompFrame> registerTransactionRoute(String transactionId)
+    {
+        return transactionRouter.register(transactionId);
+    }
+
+    @Override
+    public void deregisterTransactionRoute(String transactionId)
+    {
+        transactionRouter.deregister(transactionId);
+    }
+
     @Override
     public synchronized void connectStomp(StompConnectConfig stompConnectConfig) throws Throwable
     {
@@ -288,6 +395,8 @@ public abstract class WSStompClientBase<StompConnectConfig extends IStompConnect
             return;
         }
         deliverMessageDispose.dispose();
+        // disposing the connection does not signal the subscribers of the routes
+        completeRoutes();
     }
 
     @Override
@@ -298,11 +407,24 @@ public abstract class WSStompClientBase<StompConnectConfig extends IStompConnect
             return null;
         }
 
+        for (IStompDisconnectHandler disconnectHandler : disconnectHandlers)
+        {
+            try
+            {
+                disconnectHandler.beforeDisconnect();
+            }
+            catch (Throwable e)
+            {
+                // a handler failing must not keep the connection open, DISCONNECT fails on its own if it is broken
+            }
+        }
+        Mono<StompFrame> receipt = waitReceipt(receiptId);
         receiptId = sendStompMessage(new StompFrame(null, null, StompFrameType.DISCONNECT, null), receiptId);
+        flushWrites();
 
         if (receiptId != null)
         {
-            waitReceipt(receiptId).subscribe(frame -> setDisconnected(), err -> setDisconnected(), this::setDisconnected);
+            receipt.subscribe(frame -> setDisconnected(), err -> setDisconnected());
         }
         else
         {
@@ -324,21 +446,10 @@ public abstract class WSStompClientBase<StompConnectConfig extends IStompConnect
         return sessionInfo;
     }
 
-    protected Integer removeCR(String text, int startInclusive, int endExclusive)
+    // Frames completed by a received message, the accumulator keeps a partial frame until the rest of it arrives
+    protected List<StompFrame> decodeReceived(StompFrameAccumulator frameAccumulator, WSRawMessage msg)
     {
-        if (text == null || startInclusive < 0 || endExclusive < 0 || endExclusive > text.length() || endExclusive < startInclusive)
-        {
-            return null;
-        }
-        if (startInclusive == endExclusive)
-        {
-            return endExclusive;
-        }
-        if (text.charAt(endExclusive - 1) == '\r')
-        {
-            return endExclusive - 1;
-        }
-        return endExclusive;
+        return frameAccumulator.accept(toBuffer(msg));
     }
 
     protected IWSClient<?, ?> getWsClient()
@@ -369,6 +480,67 @@ public abstract class WSStompClientBase<StompConnectConfig extends IStompConnect
         this.sessionInfo = sessionInfo;
     }
 
+    private void dispatchFrame(StompFrame frame)
+    {
+        Map<String, String> headers = frame.getHeaders();
+        if (!transactionRouter.isEmpty())
+        {
+            transactionRouter.route(headers.get(StompHeaders.TRANSACTION), frame);
+        }
+        if (frame.getType() == StompFrameType.RECEIPT)
+        {
+            receiptTable.complete(frame);
+            return;
+        }
+        if (frame.getType() != StompFrameType.MESSAGE)
+        {
+            return;
+        }
+        String subscriptionId = headers.get(StompHeaders.SUBSCRIPTION);
+        if (subscriptionId != null)
+        {
+            subscriptionRouter.route(subscriptionId, frame);
+            return;
+        }
+        // STOMP 1.0 messages of a subscription without id only carry the destination
+        destinationRouter.route(headers.get(StompHeaders.DESTINATION), frame);
+    }
+
+    private void failRoutes(Throwable t)
+    {
+        subscriptionRouter.error(t);
+        destinationRouter.error(t);
+        transactionRouter.error(t);
+        receiptTable.failAll(t);
+    }
+
+    private void completeRoutes()
+    {
+        subscriptionRouter.complete();
+        destinationRouter.complete();
+        transactionRouter.complete();
+        receiptTable.failAll(new IllegalStateException("Connection closed before the receipt was received. Client: " + describeClient()));
+    }
+
+    private static ByteBuffer toBuffer(WSRawMessage msg)
+    {
+        ByteBuffer data;
+
+        switch (msg.getType())
+        {
+        case BINARY:
+            data = msg.getBinaryBuffer();
+            break;
+        case TEXT:
+            data = ByteBuffer.wrap(msg.getStringData().getBytes(StandardCharsets.UTF_8));
+            break;
+        default:
+            throw new UnsupportedOperationException("Unknown websocket response type " + msg.getType());
+        }
+
+        return data == null ? ByteBuffer.allocate(0) : data;
+    }
+
     protected abstract boolean trimHeaders();
 
     protected abstract void connectWithConfig(StompConnectConfig connectConfig) throws Throwable;
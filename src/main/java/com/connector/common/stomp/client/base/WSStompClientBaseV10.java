@@ -7,6 +7,7 @@ import com.connector.common.stomp.constant.StompVersion;
 import com.connector.common.stomp.internal.config.StompConnectConfigV10;
 import com.connector.common.stomp.internal.exception.StompErrorFrame;
 import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompHeaderMap;
 import com.connector.common.stomp.internal.model.StompSessionInfoV10;
 import com.connector.common.websocket.client.base.IWSClient;
 import com.connector.common.websocket.constant.WSLifecycle;
@@ -15,7 +16,6 @@ import reactor.core.publisher.Mono;
 
 import java.text.MessageFormat;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,7 +41,7 @@ public class WSStompClientBaseV10<StompConnectConfig extends StompConnectConfigV
     @Override
     protected void connectWithConfig(StompConnectConfig connectConfig) throws Throwable
     {
-        Map<String, String> connectHeaders = new LinkedHashMap<>();
+        Map<String, String> connectHeaders = new StompHeaderMap();
         if (connectConfig.getLogin() != null)
         {
             connectHeaders.put(StompHeaders.LOGIN, connectConfig.getLogin());
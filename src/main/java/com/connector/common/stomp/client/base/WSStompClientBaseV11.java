@@ -7,6 +7,7 @@ import com.connector.common.stomp.constant.StompVersion;
 import com.connector.common.stomp.internal.config.StompConnectConfigV11;
 import com.connector.common.stomp.internal.exception.StompErrorFrame;
 import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompHeaderMap;
 import com.connector.common.stomp.internal.model.StompSessionInfoV11;
 import com.connector.common.websocket.client.base.IWSClient;
 import com.connector.common.websocket.constant.WSLifecycle;
@@ -23,7 +24,6 @@ import java.time.OffsetDateTime;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -76,7 +76,7 @@ public class WSStompClientBaseV11<StompConnectConfig extends StompConnectConfigV
     @Override
     protected void connectWithConfig(StompConnectConfig connectConfig) throws Throwable
     {
-        Map<String, String> connectHeaders = new LinkedHashMap<>();
+        Map<String, String> connectHeaders = new StompHeaderMap();
         if (connectConfig.getHeartbeatClient() != null && connectConfig.getHeartbeatServer() != null)
         {
             String heartbeat = MessageFormat.format("{0},{1}", String.valueOf(connectConfig.getHeartbeatClient().toMillis()), String.valueOf(connectConfig.getHeartbeatServer().toMillis()));
@@ -1,5 +1,7 @@
 package com.connector.common.stomp.constant;
 
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -7,6 +9,21 @@ public enum StompFrameType
 {
     HEARTBEAT(true), CONNECT(false), SEND(false), SUBSCRIBE(false), UNSUBSCRIBE(false), BEGIN(false), COMMIT(false), ABORT(false), ACK(false), NACK(false), DISCONNECT(false), STOMP(false), CONNECTED(false), MESSAGE(true), RECEIPT(true), ERROR(true);
 
+    private static final Map<String, StompFrameType> cachedFrameTypes;
+
+    static
+    {
+        Map<String, StompFrameType> frameTypes = new HashMap<>();
+        for (StompFrameType t : values())
+        {
+            if (t != HEARTBEAT)
+            {
+                frameTypes.put(t.name(), t);
+            }
+        }
+        cachedFrameTypes = Collections.unmodifiableMap(frameTypes);
+    }
+
     private final boolean fromServer;
 
     StompFrameType(boolean fromServer)
@@ -19,33 +36,88 @@ public enum StompFrameType
         return fromServer;
     }
 
-    private static Map<String, StompFrameType> cachedFrameTypes;
-
     public static StompFrameType parse(String v)
     {
         if (v == null)
         {
             return null;
         }
-        if (cachedFrameTypes != null)
+        return cachedFrameTypes.get(v);
+    }
+
+    // Identifies the command from the octets of the frame's command line, picking the candidate by length and first
+    // octet so nothing is allocated
+    public static StompFrameType parse(ByteBuffer buffer, int startInclusive, int endExclusive)
+    {
+        if (endExclusive <= startInclusive)
+        {
+            return null;
+        }
+        StompFrameType candidate;
+        byte first = buffer.get(startInclusive);
+        switch (endExclusive - startInclusive)
         {
-            return cachedFrameTypes.get(v);
+        case 3:
+            candidate = ACK;
+            break;
+        case 4:
+            candidate = first == 'S' ? SEND : NACK;
+            break;
+        case 5:
+            switch (first)
+            {
+            case 'B':
+                candidate = BEGIN;
+                break;
+            case 'A':
+                candidate = ABORT;
+                break;
+            case 'S':
+                candidate = STOMP;
+                break;
+            default:
+                candidate = ERROR;
+                break;
+            }
+            break;
+        case 6:
+            candidate = COMMIT;
+            break;
+        case 7:
+            switch (first)
+            {
+            case 'C':
+                candidate = CONNECT;
+                break;
+            case 'M':
+                candidate = MESSAGE;
+                break;
+            default:
+                candidate = RECEIPT;
+                break;
+            }
+            break;
+        case 9:
+            candidate = first == 'S' ? SUBSCRIBE : CONNECTED;
+            break;
+        case 10:
+            candidate = DISCONNECT;
+            break;
+        case 11:
+            candidate = UNSUBSCRIBE;
+            break;
+        default:
+            return null;
         }
-        synchronized (StompFrameType.class)
+        String name = candidate.name();
+        for (int i = 0; i < name.length(); i++)
         {
-            if (cachedFrameTypes == null)
+            if (buffer.get(startInclusive + i) != name.charAt(i))
             {
-                cachedFrameTypes = new HashMap<>();
-                for (StompFrameType t : values())
-                {
-                    if (t != HEARTBEAT)
-                    {
-                        cachedFrameTypes.put(t.name(), t);
-                    }
-                }
+                return null;
             }
-            return cachedFrameTypes.get(v);
         }
+        return candidate;
     }
 }
 
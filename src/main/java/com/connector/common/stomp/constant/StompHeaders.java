@@ -26,4 +26,10 @@ public class StompHeaders
     public static final String HEARTBEAT      = "heart-beat";
     public static final String SERVER         = "server";
 
+    // Broker specific prefetch headers of SUBSCRIBE
+    //  + https://activemq.apache.org/components/classic/documentation/stomp
+    //  + https://www.rabbitmq.com/docs/stomp#prefetch
+    public static final String ACTIVEMQ_PREFETCH_SIZE = "activemq.prefetchSize";
+    public static final String PREFETCH_COUNT         = "prefetch-count";
+
 }
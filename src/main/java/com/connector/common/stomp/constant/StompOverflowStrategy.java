@@ -0,0 +1,6 @@
+package com.connector.common.stomp.constant;
+
+public enum StompOverflowStrategy
+{
+    BLOCK, DROP_NEWEST, DROP_OLDEST, LATEST_ONLY, FAIL
+}
@@ -0,0 +1,265 @@
+package com.connector.common.stomp.internal.codec;
+
+import com.connector.common.stomp.internal.model.StompHeaderMap;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+// Header view of a decoded frame. The decoder only records where every header key / value sits in the received buffer,
+// well-known keys resolve to the StompHeaders constants and the remaining strings are created the first time a header
+// is looked up. Any mutation or iteration copies the headers into a StompHeaderMap which then backs this view.
+public class LazyStompHeaders extends AbstractMap<String, String>
+{
+    private static final int SLOT_SIZE = 4;
+
+    private final ByteBuffer            buffer;
+    private final StompHeaderValueCache valueCache;
+
+    private int[]               offsets;
+    private String[]            keys;
+    private String[]            values;
+    private int                 size;
+    private Map<String, String> materialized;
+
+    LazyStompHeaders(ByteBuffer buffer, StompHeaderValueCache valueCache)
+    {
+        this.buffer = buffer;
+        this.valueCache = valueCache;
+        this.offsets = new int[8 * SLOT_SIZE];
+        this.keys = new String[8];
+        this.values = new String[8];
+    }
+
+    // Returns false when the key is already present, only the first occurrence of a repeated header is significant
+    boolean add(int keyStart, int keyEnd, int valueStart, int valueEnd)
+    {
+        if (indexOf(keyStart, keyEnd) >= 0)
+        {
+            return false;
+        }
+        if (size == keys.length)
+        {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            keys = Arrays.copyOf(keys, keys.length * 2);
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        int slot = size * SLOT_SIZE;
+        offsets[slot] = keyStart;
+        offsets[slot + 1] = keyEnd;
+        offsets[slot + 2] = valueStart;
+        offsets[slot + 3] = valueEnd;
+        keys[size] = StompHeaderNames.canonical(buffer, keyStart, keyEnd);
+        size++;
+        return true;
+    }
+
+    int indexOf(String key)
+    {
+        boolean asciiKey = isAscii(key);
+        for (int i = 0; i < size; i++)
+        {
+            String cachedKey = keys[i];
+            if (cachedKey != null)
+            {
+                if (cachedKey.equals(key))
+                {
+                    return i;
+                }
+                continue;
+            }
+            int slot = i * SLOT_SIZE;
+            int keyStart = offsets[slot];
+            int keyEnd = offsets[slot + 1];
+            if (keyEnd - keyStart < key.length())
+            {
+                // every char takes at least one octet
+                continue;
+            }
+            if (asciiKey)
+            {
+                if (keyEnd - keyStart == key.length() && asciiEquals(keyStart, key))
+                {
+                    return i;
+                }
+            }
+            else if (key(i).equals(key))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int valueStart(int index)
+    {
+        return offsets[index * SLOT_SIZE + 2];
+    }
+
+    int valueEnd(int index)
+    {
+        return offsets[index * SLOT_SIZE + 3];
+    }
+
+    String value(int index)
+    {
+        String value = values[index];
+        if (value == null)
+        {
+            int slot = index * SLOT_SIZE;
+            if (valueCache != null && valueCache.accepts(key(index)))
+            {
+                value = valueCache.intern(buffer, offsets[slot + 2], offsets[slot + 3]);
+            }
+            else
+            {
+                value = StompOctets.toString(buffer, offsets[slot + 2], offsets[slot + 3]);
+            }
+            values[index] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public String get(Object key)
+    {
+        if (materialized != null)
+        {
+            return materialized.get(key);
+        }
+        if (!(key instanceof String))
+        {
+            return null;
+        }
+        int index = indexOf((String) key);
+        return index < 0 ? null : value(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        if (materialized != null)
+        {
+            return materialized.containsKey(key);
+        }
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return materialized != null ? materialized.size() : size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    @Override
+    public String put(String key, String value)
+    {
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public String remove(Object key)
+    {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends String> m)
+    {
+        materialize().putAll(m);
+    }
+
+    @Override
+    public void clear()
+    {
+        materialize().clear();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet()
+    {
+        return materialize().entrySet();
+    }
+
+    private Map<String, String> materialize()
+    {
+        if (materialized == null)
+        {
+            Map<String, String> headers = new StompHeaderMap(size);
+            for (int i = 0; i < size; i++)
+            {
+                headers.put(key(i), value(i));
+            }
+            materialized = headers;
+        }
+        return materialized;
+    }
+
+    private String key(int index)
+    {
+        String key = keys[index];
+        if (key == null)
+        {
+            int slot = index * SLOT_SIZE;
+            key = StompOctets.toString(buffer, offsets[slot], offsets[slot + 1]);
+            keys[index] = key;
+        }
+        return key;
+    }
+
+    private int indexOf(int keyStart, int keyEnd)
+    {
+        int length = keyEnd - keyStart;
+        for (int i = 0; i < size; i++)
+        {
+            int slot = i * SLOT_SIZE;
+            int otherStart = offsets[slot];
+            if (offsets[slot + 1] - otherStart != length)
+            {
+                continue;
+            }
+            int j = 0;
+            while (j < length && buffer.get(keyStart + j) == buffer.get(otherStart + j))
+            {
+                j++;
+            }
+            if (j == length)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean asciiEquals(int start, String key)
+    {
+        for (int j = 0; j < key.length(); j++)
+        {
+            if (buffer.get(start + j) != key.charAt(j))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAscii(String key)
+    {
+        for (int j = 0; j < key.length(); j++)
+        {
+            if (key.charAt(j) >= 0x80)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
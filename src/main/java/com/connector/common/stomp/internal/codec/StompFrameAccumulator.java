@@ -0,0 +1,113 @@
+package com.connector.common.stomp.internal.codec;
+
+import com.connector.common.stomp.internal.model.StompFrame;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Splits the websocket messages of one connection into stomp frames. A message may hold several frames (brokers batch
+// them under load) and a frame may be split across messages, the unfinished tail is carried over and completed by the
+// next message. Messages are decoded in place unless a tail is pending, decoded frames keep referencing the octets they
+// were decoded from so carried over octets are always copied into a fresh array. Not thread safe, messages of one
+// connection are expected to arrive in order.
+public class StompFrameAccumulator
+{
+    public static final int DEFAULT_MAX_PENDING_OCTETS = 16 * 1024 * 1024;
+
+    private static final byte LF  = '\n';
+    private static final byte CR  = '\r';
+    private static final byte NUL = '\0';
+
+    private final StompFrameDecoder decoder;
+    private final boolean           trimHeaders;
+    private final int               maxPendingOctets;
+
+    private byte[] pending;
+
+    public StompFrameAccumulator(StompFrameDecoder decoder, boolean trimHeaders)
+    {
+        this(decoder, trimHeaders, DEFAULT_MAX_PENDING_OCTETS);
+    }
+
+    public StompFrameAccumulator(StompFrameDecoder decoder, boolean trimHeaders, int maxPendingOctets)
+    {
+        this.decoder = decoder;
+        this.trimHeaders = trimHeaders;
+        this.maxPendingOctets = maxPendingOctets;
+    }
+
+    public List<StompFrame> accept(ByteBuffer data)
+    {
+        ByteBuffer buffer = data == null ? ByteBuffer.allocate(0) : data.duplicate();
+        boolean continuesFrame = pending != null;
+        if (continuesFrame)
+        {
+            byte[] joined = new byte[pending.length + buffer.remaining()];
+            System.arraycopy(pending, 0, joined, 0, pending.length);
+            buffer.get(joined, pending.length, buffer.remaining());
+            buffer = ByteBuffer.wrap(joined);
+            pending = null;
+        }
+
+        skipFramePadding(buffer);
+        if (!buffer.hasRemaining())
+        {
+            // A message of only EOLs is a heartbeat, EOLs after a frame are just padding
+            return continuesFrame ? Collections.emptyList() : Collections.singletonList(StompFrameDecoder.heartbeat());
+        }
+
+        List<StompFrame> frames = new ArrayList<>(1);
+        while (buffer.hasRemaining())
+        {
+            StompFrame frame = decoder.decodeNext(buffer, trimHeaders);
+            if (frame == null)
+            {
+                carryOver(buffer);
+                break;
+            }
+            frames.add(frame);
+            skipFramePadding(buffer);
+        }
+        return frames;
+    }
+
+    public int getPendingOctets()
+    {
+        return pending == null ? 0 : pending.length;
+    }
+
+    public void reset()
+    {
+        pending = null;
+    }
+
+    private void carryOver(ByteBuffer buffer)
+    {
+        if (buffer.remaining() > maxPendingOctets)
+        {
+            throw new IllegalStateException("Not a valid stomp frame. Reason: unfinished frame exceeds " + maxPendingOctets + " octets");
+        }
+        pending = new byte[buffer.remaining()];
+        buffer.get(pending);
+    }
+
+    // Frames may be followed by any number of EOLs, stray NULs are tolerated as well
+    private static void skipFramePadding(ByteBuffer buffer)
+    {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        while (position < limit)
+        {
+            byte b = buffer.get(position);
+            if (b != LF && b != CR && b != NUL)
+            {
+                break;
+            }
+            position++;
+        }
+        ((Buffer) buffer).position(position);
+    }
+}
@@ -0,0 +1,186 @@
+package com.connector.common.stomp.internal.codec;
+
+import com.connector.common.stomp.constant.StompFrameType;
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.model.StompFrame;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+// Parses a stomp frame straight from the received octets. The command is matched in place, headers are indexed by
+// offset (see LazyStompHeaders) and the body stays a read-only slice of the received buffer.
+// References: https://stomp.github.io/stomp-specification-1.2.html#Augmented_BNF
+public class StompFrameDecoder
+{
+    private static final byte LF    = '\n';
+    private static final byte CR    = '\r';
+    private static final byte NUL   = '\0';
+    private static final byte COLON = ':';
+
+    private final StompHeaderValueCache headerValueCache;
+
+    public StompFrameDecoder()
+    {
+        this(null);
+    }
+
+    public StompFrameDecoder(StompHeaderValueCache headerValueCache)
+    {
+        this.headerValueCache = headerValueCache;
+    }
+
+    // Decodes a websocket message holding exactly one frame
+    public StompFrame decode(ByteBuffer buffer, boolean trimHeaders)
+    {
+        int start = buffer.position();
+        int end = buffer.limit();
+
+        if (isHeartbeat(buffer, start, end))
+        {
+            return heartbeat();
+        }
+        return decodeFrame(buffer, start, end, trimHeaders, false);
+    }
+
+    // Decodes the frame starting at the buffer's position and moves the position right after its NUL. Returns null and
+    // leaves the position untouched when the buffer only holds the beginning of the frame.
+    public StompFrame decodeNext(ByteBuffer buffer, boolean trimHeaders)
+    {
+        return decodeFrame(buffer, buffer.position(), buffer.limit(), trimHeaders, true);
+    }
+
+    public static StompFrame heartbeat()
+    {
+        return new StompFrame(Collections.emptyMap(), "\n", StompFrameType.HEARTBEAT, "");
+    }
+
+    private StompFrame decodeFrame(ByteBuffer buffer, int start, int end, boolean trimHeaders, boolean streaming)
+    {
+        int lineIndex = StompOctets.indexOf(buffer, LF, start, end);
+        if (lineIndex < 0)
+        {
+            if (streaming)
+            {
+                // the rest of the frame is still to come
+                return null;
+            }
+            throw new IllegalStateException("Not a valid stomp frame. Reason: missing EOL(LF / CRLF) - " + StompOctets.toString(buffer, start, end));
+        }
+        int frameTypeEndIndex = removeCR(buffer, start, lineIndex);
+        StompFrameType type = StompFrameType.parse(buffer, start, frameTypeEndIndex);
+        if (type == null)
+        {
+            throw new IllegalStateException("Unknown stomp frame type: " + StompOctets.toString(buffer, start, frameTypeEndIndex));
+        }
+
+        LazyStompHeaders headers = new LazyStompHeaders(buffer, headerValueCache);
+        while (true)
+        {
+            int startLineIndex = lineIndex + 1;
+            lineIndex = StompOctets.indexOf(buffer, LF, startLineIndex, end);
+            if (lineIndex < 0)
+            {
+                if (streaming)
+                {
+                    return null;
+                }
+                throw new IllegalStateException("Not a valid stomp frame. Reason: missing EOL(LF / CRLF) - " + StompOctets.toString(buffer, start, end));
+            }
+            int endLineIndex = removeCR(buffer, startLineIndex, lineIndex);
+            if (startLineIndex == endLineIndex)
+            {
+                break;
+            }
+            int headerDelimiterIndex = StompOctets.indexOf(buffer, COLON, startLineIndex, endLineIndex);
+            if (headerDelimiterIndex < 0)
+            {
+                throw new IllegalStateException("Not a valid stomp frame header should be in the format of <headerKey>:<headerValue>. But is: " + StompOctets.toString(buffer, startLineIndex, endLineIndex));
+            }
+            int valueStartIndex = headerDelimiterIndex + 1;
+            int valueEndIndex = endLineIndex;
+            if (trimHeaders)
+            {
+                while (valueStartIndex < valueEndIndex && (buffer.get(valueStartIndex) & 0xFF) <= ' ')
+                {
+                    valueStartIndex++;
+                }
+                while (valueEndIndex > valueStartIndex && (buffer.get(valueEndIndex - 1) & 0xFF) <= ' ')
+                {
+                    valueEndIndex--;
+                }
+            }
+            headers.add(startLineIndex, headerDelimiterIndex, valueStartIndex, valueEndIndex);
+        }
+
+        int dataStartIndex = lineIndex + 1;
+        int contentLength = -1;
+        int contentLengthIndex = headers.indexOf(StompHeaders.CONTENT_LENGTH);
+        if (contentLengthIndex >= 0)
+        {
+            contentLength = StompOctets.parseInt(buffer, headers.valueStart(contentLengthIndex), headers.valueEnd(contentLengthIndex));
+            if (contentLength < 0)
+            {
+                throw new IllegalStateException("Not a valid stomp frame. Reason: invalid content length: " + headers.value(contentLengthIndex));
+            }
+        }
+
+        // The body is exactly content-length octets when the header is present, so it may contain NULs and is never
+        // scanned. Without it the body ends at the first NUL.
+        int dataBoundEndIndex;
+        if (contentLength >= 0)
+        {
+            int payloadLength = end - dataStartIndex;
+            if (contentLength >= payloadLength)
+            {
+                if (streaming)
+                {
+                    return null;
+                }
+                throw new IllegalStateException("Not a valid stomp frame. Reason: content length " + contentLength + " exceeds payload length " + Math.max(payloadLength - 1, 0));
+            }
+            dataBoundEndIndex = dataStartIndex + contentLength;
+            if (buffer.get(dataBoundEndIndex) != NUL)
+            {
+                throw new IllegalStateException("Not a valid stomp frame. Reason: payload is not null terminated ('\0') after content length " + contentLength);
+            }
+        }
+        else
+        {
+            dataBoundEndIndex = StompOctets.indexOf(buffer, NUL, dataStartIndex, end);
+            if (dataBoundEndIndex < 0)
+            {
+                if (streaming)
+                {
+                    return null;
+                }
+                throw new IllegalStateException("Not a valid stomp frame. Reason: payload is missing null terminated ('\0')");
+            }
+        }
+        if (streaming)
+        {
+            ((Buffer) buffer).position(dataBoundEndIndex + 1);
+        }
+
+        return StompFrame.binary(headers, StompOctets.slice(buffer, dataStartIndex, dataBoundEndIndex), type, headers.get(StompHeaders.CONTENT_TYPE));
+    }
+
+    private static boolean isHeartbeat(ByteBuffer buffer, int start, int end)
+    {
+        if (start == end)
+        {
+            return true;
+        }
+        byte first = buffer.get(start);
+        return first == LF || first == NUL || end - start == 2 && first == CR && buffer.get(start + 1) == LF;
+    }
+
+    private static int removeCR(ByteBuffer buffer, int startInclusive, int endExclusive)
+    {
+        if (endExclusive > startInclusive && buffer.get(endExclusive - 1) == CR)
+        {
+            return endExclusive - 1;
+        }
+        return endExclusive;
+    }
+}
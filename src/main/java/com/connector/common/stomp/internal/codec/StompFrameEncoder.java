@@ -0,0 +1,269 @@
+package com.connector.common.stomp.internal.codec;
+
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+// Serializes a stomp frame in a single pass over its headers without java streams or intermediate strings. Frames with a
+// binary body are written straight into one exactly sized byte array, frames with a text body are written into one
+// presized StringBuilder as OkHttp only sends a TEXT websocket frame from a String.
+// References: https://stomp.github.io/stomp-specification-1.2.html#Augmented_BNF
+public class StompFrameEncoder
+{
+    private static final byte LF  = '\n';
+    private static final byte NUL = '\0';
+
+    public WSRawMessage encode(StompFrame frame)
+    {
+        if (frame == null)
+        {
+            return null;
+        }
+        if (frame.isBinaryBody())
+        {
+            return WSRawMessage.binary(encodeBinary(frame));
+        }
+        return WSRawMessage.text(encodeText(frame));
+    }
+
+    public byte[] encodeBinary(StompFrame frame)
+    {
+        ByteBuffer body = frame.getBodyBuffer();
+        int bodyLength = body == null ? 0 : body.remaining();
+
+        HeadWriter head = new HeadWriter();
+        head.command(frame.getType().name());
+        forEachHeader(frame.getHeaders(), head);
+        byte[] octets = new byte[head.length + 1 + bodyLength + 1];
+
+        head.startWriting(octets, 0);
+        head.command(frame.getType().name());
+        forEachHeader(frame.getHeaders(), head);
+        octets[head.length++] = LF;
+        if (body != null)
+        {
+            body.get(octets, head.length, bodyLength);
+        }
+        octets[octets.length - 1] = NUL;
+        return octets;
+    }
+
+    public String encodeText(StompFrame frame)
+    {
+        String body = frame.getBody() == null ? "" : frame.getBody();
+
+        HeadWriter head = new HeadWriter();
+        head.command(frame.getType().name());
+        forEachHeader(frame.getHeaders(), head);
+        StringBuilder text = new StringBuilder(head.chars + 1 + body.length() + 1);
+
+        head.startWriting(text);
+        head.command(frame.getType().name());
+        forEachHeader(frame.getHeaders(), head);
+        return text.append('\n').append(body).append('\0').toString();
+    }
+
+    // Command and header lines of the frame without the blank line ending the head, used as a prefix by
+    // WSStompPreparedSend
+    public byte[] encodeHead(StompFrame frame)
+    {
+        HeadWriter head = new HeadWriter();
+        head.command(frame.getType().name());
+        forEachHeader(frame.getHeaders(), head);
+        byte[] octets = new byte[head.length];
+
+        head.startWriting(octets, 0);
+        head.command(frame.getType().name());
+        forEachHeader(frame.getHeaders(), head);
+        return octets;
+    }
+
+    public String encodeHeadText(StompFrame frame)
+    {
+        HeadWriter head = new HeadWriter();
+        head.command(frame.getType().name());
+        forEachHeader(frame.getHeaders(), head);
+        StringBuilder text = new StringBuilder(head.chars);
+
+        head.startWriting(text);
+        head.command(frame.getType().name());
+        forEachHeader(frame.getHeaders(), head);
+        return text.toString();
+    }
+
+    // Completes a prefix from encodeHead with the content-length, the optional receipt, the body and the NUL
+    public byte[] encodeWithHead(byte[] encodedHead, ByteBuffer body, String receiptId)
+    {
+        int bodyLength = body == null ? 0 : body.remaining();
+
+        HeadWriter tail = new HeadWriter();
+        tailHeaders(tail, bodyLength, receiptId);
+        byte[] octets = new byte[encodedHead.length + tail.length + 1 + bodyLength + 1];
+        System.arraycopy(encodedHead, 0, octets, 0, encodedHead.length);
+
+        tail.startWriting(octets, encodedHead.length);
+        tailHeaders(tail, bodyLength, receiptId);
+        octets[tail.length++] = LF;
+        if (body != null)
+        {
+            body.get(octets, tail.length, bodyLength);
+        }
+        octets[octets.length - 1] = NUL;
+        return octets;
+    }
+
+    public String encodeWithHead(String encodedHead, String body, String receiptId)
+    {
+        String text = body == null ? "" : body;
+        int bodyLength = Math.toIntExact(utf8Length(text));
+
+        HeadWriter tail = new HeadWriter();
+        tailHeaders(tail, bodyLength, receiptId);
+        StringBuilder frame = new StringBuilder(encodedHead.length() + tail.chars + 1 + text.length() + 1).append(encodedHead);
+
+        tail.startWriting(frame);
+        tailHeaders(tail, bodyLength, receiptId);
+        return frame.append('\n').append(text).append('\0').toString();
+    }
+
+    private static void tailHeaders(HeadWriter tail, int contentLength, String receiptId)
+    {
+        tail.accept(StompHeaders.CONTENT_LENGTH, Integer.toString(contentLength));
+        if (receiptId != null)
+        {
+            tail.accept(StompHeaders.RECEIPT, receiptId);
+        }
+    }
+
+    private static void forEachHeader(Map<String, String> headers, HeadWriter head)
+    {
+        if (headers != null)
+        {
+            headers.forEach(head);
+        }
+    }
+
+    // UTF-8 length of the string, equal to its length when every char is ASCII and 0 for null. StompFrame measures text
+    // bodies with it too, so content-length and the encoded body always agree
+    public static long utf8Length(String text)
+    {
+        if (text == null)
+        {
+            return 0;
+        }
+        long length = text.length();
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c < 0x80)
+            {
+                continue;
+            }
+            if (c < 0x800)
+            {
+                length += 1;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1)))
+            {
+                // 4 octets for the 2 chars of the pair
+                length += 2;
+                i++;
+            }
+            else if (!Character.isSurrogate(c))
+            {
+                length += 2;
+            }
+            // malformed surrogates are replaced by a single '?' when encoded
+        }
+        return length;
+    }
+
+    // Measures the frame head on the first pass and writes it on the second, one instance per encoded frame
+    private static final class HeadWriter implements BiConsumer<String, String>
+    {
+        private byte[]        octets;
+        private StringBuilder text;
+        private int           length;
+        private int           chars;
+
+        void startWriting(byte[] octets, int offset)
+        {
+            this.octets = octets;
+            this.length = offset;
+        }
+
+        void startWriting(StringBuilder text)
+        {
+            this.text = text;
+        }
+
+        void command(String command)
+        {
+            write(command);
+            write('\n');
+        }
+
+        @Override
+        public void accept(String key, String value)
+        {
+            write(key);
+            write(':');
+            write(String.valueOf(value));
+            write('\n');
+        }
+
+        private void write(char c)
+        {
+            if (octets != null)
+            {
+                octets[length] = (byte) c;
+            }
+            else if (text != null)
+            {
+                text.append(c);
+            }
+            length++;
+            chars++;
+        }
+
+        private void write(String s)
+        {
+            if (text != null)
+            {
+                text.append(s);
+                return;
+            }
+            if (octets == null)
+            {
+                length += Math.toIntExact(utf8Length(s));
+                chars += s.length();
+                return;
+            }
+            // ASCII fast path, one octet per char and only the remainder after the first non ASCII char is encoded
+            int n = s.length();
+            int i = 0;
+            while (i < n)
+            {
+                char c = s.charAt(i);
+                if (c >= 0x80)
+                {
+                    break;
+                }
+                octets[length + i] = (byte) c;
+                i++;
+            }
+            length += i;
+            if (i < n)
+            {
+                byte[] encoded = s.substring(i).getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(encoded, 0, octets, length, encoded.length);
+                length += encoded.length;
+            }
+        }
+    }
+}
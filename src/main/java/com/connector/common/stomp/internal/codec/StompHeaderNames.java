@@ -0,0 +1,124 @@
+package com.connector.common.stomp.internal.codec;
+
+import com.connector.common.stomp.constant.StompHeaders;
+
+import java.nio.ByteBuffer;
+
+// Maps the octets of a well-known header name to the shared StompHeaders constant, so decoding those names never
+// allocates. Candidates are picked by length and first octet, then compared once.
+final class StompHeaderNames
+{
+    private StompHeaderNames()
+    {
+    }
+
+    static String canonical(ByteBuffer buffer, int startInclusive, int endExclusive)
+    {
+        String candidate;
+        switch (endExclusive - startInclusive)
+        {
+        case 2:
+            candidate = StompHeaders.ID;
+            break;
+        case 3:
+            candidate = StompHeaders.ACK;
+            break;
+        case 4:
+            candidate = StompHeaders.HOST;
+            break;
+        case 5:
+            candidate = StompHeaders.LOGIN;
+            break;
+        case 6:
+            candidate = StompHeaders.SERVER;
+            break;
+        case 7:
+            switch (buffer.get(startInclusive))
+            {
+            case 'r':
+                candidate = StompHeaders.RECEIPT;
+                break;
+            case 'v':
+                candidate = StompHeaders.VERSION;
+                break;
+            case 'm':
+                candidate = StompHeaders.MESSAGE;
+                break;
+            case 's':
+                candidate = StompHeaders.SESSION;
+                break;
+            default:
+                return null;
+            }
+            break;
+        case 8:
+            candidate = StompHeaders.PASSCODE;
+            break;
+        case 10:
+            switch (buffer.get(startInclusive))
+            {
+            case 'm':
+                candidate = StompHeaders.MESSAGE_ID;
+                break;
+            case 'r':
+                candidate = StompHeaders.RECEIPT_ID;
+                break;
+            case 'h':
+                candidate = StompHeaders.HEARTBEAT;
+                break;
+            default:
+                return null;
+            }
+            break;
+        case 11:
+            switch (buffer.get(startInclusive))
+            {
+            case 'd':
+                candidate = StompHeaders.DESTINATION;
+                break;
+            case 't':
+                candidate = StompHeaders.TRANSACTION;
+                break;
+            default:
+                return null;
+            }
+            break;
+        case 12:
+            switch (buffer.get(startInclusive))
+            {
+            case 'c':
+                candidate = StompHeaders.CONTENT_TYPE;
+                break;
+            case 's':
+                candidate = StompHeaders.SUBSCRIPTION;
+                break;
+            default:
+                return null;
+            }
+            break;
+        case 14:
+            switch (buffer.get(startInclusive))
+            {
+            case 'a':
+                candidate = StompHeaders.ACCEPT_VERSION;
+                break;
+            case 'c':
+                candidate = StompHeaders.CONTENT_LENGTH;
+                break;
+            default:
+                return null;
+            }
+            break;
+        default:
+            return null;
+        }
+        for (int i = 0; i < candidate.length(); i++)
+        {
+            if (buffer.get(startInclusive + i) != candidate.charAt(i))
+            {
+                return null;
+            }
+        }
+        return candidate;
+    }
+}
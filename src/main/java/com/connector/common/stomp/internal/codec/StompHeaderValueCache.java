@@ -0,0 +1,93 @@
+package com.connector.common.stomp.internal.codec;
+
+import com.connector.common.stomp.constant.StompHeaders;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Bounded, direct-mapped cache that hands out the same String instance for header values that keep repeating across
+// frames (destination, subscription, ...). A slot is picked by the hash of the value octets and a miss simply replaces
+// the slot, so the cache never grows past its capacity and needs no locking.
+public class StompHeaderValueCache
+{
+    private final CachedValue[] slots;
+    private final String[]      headerNames;
+
+    public StompHeaderValueCache(int capacity)
+    {
+        this(capacity, StompHeaders.DESTINATION, StompHeaders.SUBSCRIPTION, StompHeaders.CONTENT_TYPE);
+    }
+
+    public StompHeaderValueCache(int capacity, String... headerNames)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        this.slots = new CachedValue[size < capacity ? size << 1 : size];
+        this.headerNames = Arrays.copyOf(headerNames, headerNames.length);
+    }
+
+    public boolean accepts(String headerName)
+    {
+        for (String name : headerNames)
+        {
+            if (name == headerName || name.equals(headerName))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    String intern(ByteBuffer buffer, int startInclusive, int endExclusive)
+    {
+        int hash = 1;
+        for (int i = startInclusive; i < endExclusive; i++)
+        {
+            hash = 31 * hash + buffer.get(i);
+        }
+        int index = (hash ^ hash >>> 16) & (slots.length - 1);
+        CachedValue cached = slots[index];
+        if (cached != null && cached.hash == hash && cached.matches(buffer, startInclusive, endExclusive))
+        {
+            return cached.value;
+        }
+        byte[] octets = new byte[endExclusive - startInclusive];
+        StompOctets.slice(buffer, startInclusive, endExclusive).get(octets);
+        CachedValue value = new CachedValue(hash, octets);
+        slots[index] = value;
+        return value.value;
+    }
+
+    private static final class CachedValue
+    {
+        private final int    hash;
+        private final byte[] octets;
+        private final String value;
+
+        private CachedValue(int hash, byte[] octets)
+        {
+            this.hash = hash;
+            this.octets = octets;
+            this.value = StompOctets.toString(ByteBuffer.wrap(octets), 0, octets.length);
+        }
+
+        private boolean matches(ByteBuffer buffer, int startInclusive, int endExclusive)
+        {
+            if (octets.length != endExclusive - startInclusive)
+            {
+                return false;
+            }
+            for (int i = 0; i < octets.length; i++)
+            {
+                if (octets[i] != buffer.get(startInclusive + i))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
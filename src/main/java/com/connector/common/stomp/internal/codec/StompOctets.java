@@ -0,0 +1,73 @@
+package com.connector.common.stomp.internal.codec;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+final class StompOctets
+{
+    private StompOctets()
+    {
+    }
+
+    static int indexOf(ByteBuffer buffer, byte value, int startInclusive, int endExclusive)
+    {
+        for (int i = startInclusive; i < endExclusive; i++)
+        {
+            if (buffer.get(i) == value)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static String toString(ByteBuffer buffer, int startInclusive, int endExclusive)
+    {
+        int length = endExclusive - startInclusive;
+        if (length <= 0)
+        {
+            return "";
+        }
+        if (buffer.hasArray())
+        {
+            return new String(buffer.array(), buffer.arrayOffset() + startInclusive, length, StandardCharsets.UTF_8);
+        }
+        byte[] octets = new byte[length];
+        slice(buffer, startInclusive, endExclusive).get(octets);
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+
+    static ByteBuffer slice(ByteBuffer buffer, int startInclusive, int endExclusive)
+    {
+        ByteBuffer slice = buffer.duplicate();
+        // Buffer casts keep the produced bytecode compatible with java 8 runtime
+        ((Buffer) slice).limit(endExclusive);
+        ((Buffer) slice).position(startInclusive);
+        return slice;
+    }
+
+    // Parses a non-negative decimal without creating a string, returns -1 when the octets are not a valid number
+    static int parseInt(ByteBuffer buffer, int startInclusive, int endExclusive)
+    {
+        if (startInclusive >= endExclusive)
+        {
+            return -1;
+        }
+        long value = 0;
+        for (int i = startInclusive; i < endExclusive; i++)
+        {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9)
+            {
+                return -1;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE)
+            {
+                return -1;
+            }
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,75 @@
+package com.connector.common.stomp.internal.config;
+
+import com.connector.common.stomp.constant.StompHeaders;
+
+import java.time.Duration;
+
+public class StompDeduplicationConfig
+{
+    private final String   idHeader;
+    private final int      maxIds;
+    private final Duration maxAge;
+    private final int      filterExpectedIds;
+    private final double   filterFalsePositiveRate;
+
+    public StompDeduplicationConfig(int maxIds, Duration maxAge)
+    {
+        this(StompHeaders.MESSAGE_ID, maxIds, maxAge);
+    }
+
+    public StompDeduplicationConfig(String idHeader, int maxIds, Duration maxAge)
+    {
+        this(idHeader, maxIds, maxAge, 0, 0);
+    }
+
+    // With filterExpectedIds > 0 ids evicted from the recent ids are still remembered by an approximate filter sized for
+    // that many ids. A false positive of the filter drops a message that was never seen, at the given rate.
+    public StompDeduplicationConfig(String idHeader, int maxIds, Duration maxAge, int filterExpectedIds, double filterFalsePositiveRate)
+    {
+        if (maxIds <= 0)
+        {
+            throw new IllegalArgumentException("Max ids must be positive: " + maxIds);
+        }
+        if (filterExpectedIds > 0 && (filterFalsePositiveRate <= 0 || filterFalsePositiveRate >= 1))
+        {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + filterFalsePositiveRate);
+        }
+        this.idHeader = idHeader == null ? StompHeaders.MESSAGE_ID : idHeader;
+        this.maxIds = maxIds;
+        this.maxAge = maxAge;
+        this.filterExpectedIds = filterExpectedIds;
+        this.filterFalsePositiveRate = filterFalsePositiveRate;
+    }
+
+    public String getIdHeader()
+    {
+        return idHeader;
+    }
+
+    public int getMaxIds()
+    {
+        return maxIds;
+    }
+
+    // Recent ids older than this are forgotten, null keeps them until evicted by size
+    public Duration getMaxAge()
+    {
+        return maxAge;
+    }
+
+    public int getFilterExpectedIds()
+    {
+        return filterExpectedIds;
+    }
+
+    public double getFilterFalsePositiveRate()
+    {
+        return filterFalsePositiveRate;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "StompDeduplicationConfig{" + "idHeader='" + idHeader + '\'' + ", maxIds=" + maxIds + ", maxAge=" + maxAge + ", filterExpectedIds=" + filterExpectedIds + ", filterFalsePositiveRate=" + filterFalsePositiveRate + '}';
+    }
+}
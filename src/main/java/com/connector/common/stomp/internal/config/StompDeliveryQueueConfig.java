@@ -0,0 +1,78 @@
+package com.connector.common.stomp.internal.config;
+
+import com.connector.common.stomp.constant.StompOverflowStrategy;
+import com.connector.common.stomp.internal.model.StompFrame;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.function.Function;
+
+public class StompDeliveryQueueConfig
+{
+    private final int                     capacity;
+    private final StompOverflowStrategy   overflowStrategy;
+    private final Scheduler               scheduler;
+    private final Function<StompFrame, ?> conflationKey;
+
+    public StompDeliveryQueueConfig(int capacity, StompOverflowStrategy overflowStrategy)
+    {
+        this(capacity, overflowStrategy, null);
+    }
+
+    public StompDeliveryQueueConfig(int capacity, StompOverflowStrategy overflowStrategy, Scheduler scheduler)
+    {
+        this(capacity, overflowStrategy, scheduler, null);
+    }
+
+    // With a conflation key only the latest pending frame per key is kept and the capacity bounds the number of distinct
+    // pending keys. Frames without a key are queued as usual.
+    public StompDeliveryQueueConfig(int capacity, StompOverflowStrategy overflowStrategy, Scheduler scheduler, Function<StompFrame, ?> conflationKey)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.overflowStrategy = overflowStrategy == null ? StompOverflowStrategy.BLOCK : overflowStrategy;
+        this.scheduler = scheduler == null ? Schedulers.boundedElastic() : scheduler;
+        this.conflationKey = conflationKey;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    public StompOverflowStrategy getOverflowStrategy()
+    {
+        return overflowStrategy;
+    }
+
+    // Queued frames are drained on a worker of this scheduler, so handlers never run on the websocket reader thread
+    public Scheduler getScheduler()
+    {
+        return scheduler;
+    }
+
+    public Function<StompFrame, ?> getConflationKey()
+    {
+        return conflationKey;
+    }
+
+    public boolean isConflating()
+    {
+        return conflationKey != null;
+    }
+
+    // Whether frames may be dropped or replaced without being handed downstream
+    public boolean isLossy()
+    {
+        return isConflating() || overflowStrategy == StompOverflowStrategy.DROP_NEWEST || overflowStrategy == StompOverflowStrategy.DROP_OLDEST || overflowStrategy == StompOverflowStrategy.LATEST_ONLY;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "StompDeliveryQueueConfig{" + "capacity=" + capacity + ", overflowStrategy=" + overflowStrategy + ", scheduler=" + scheduler + ", conflating=" + isConflating() + '}';
+    }
+}
@@ -0,0 +1,64 @@
+package com.connector.common.stomp.internal.config;
+
+import com.connector.common.stomp.internal.model.StompFrame;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.function.Function;
+
+public class StompPartitionConfig
+{
+    private final Function<StompFrame, ?> partitionKey;
+    private final int                     parallelism;
+    private final Scheduler               scheduler;
+
+    // Lanes run on boundedElastic, as handlers may block, e.g. on a database, without starving the timers of the
+    // parallel scheduler
+    public StompPartitionConfig(Function<StompFrame, ?> partitionKey, int parallelism)
+    {
+        this(partitionKey, parallelism, null);
+    }
+
+    public StompPartitionConfig(Function<StompFrame, ?> partitionKey, int parallelism, Scheduler scheduler)
+    {
+        if (partitionKey == null)
+        {
+            throw new IllegalArgumentException("Partition key is required");
+        }
+        if (parallelism <= 0)
+        {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.partitionKey = partitionKey;
+        this.parallelism = parallelism;
+        this.scheduler = scheduler == null ? Schedulers.boundedElastic() : scheduler;
+    }
+
+    // Frames without a key all go to the first lane
+    public Function<StompFrame, ?> getPartitionKey()
+    {
+        return partitionKey;
+    }
+
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    public Scheduler getScheduler()
+    {
+        return scheduler;
+    }
+
+    public int laneOf(StompFrame frame)
+    {
+        Object key = partitionKey.apply(frame);
+        return key == null ? 0 : Math.floorMod(key.hashCode(), parallelism);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "StompPartitionConfig{" + "parallelism=" + parallelism + ", scheduler=" + scheduler + '}';
+    }
+}
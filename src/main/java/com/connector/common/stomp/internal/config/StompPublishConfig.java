@@ -0,0 +1,61 @@
+package com.connector.common.stomp.internal.config;
+
+import java.time.Duration;
+
+public class StompPublishConfig
+{
+    private static final int DEFAULT_RECEIPT_INTERVAL         = 1;
+    private static final int DEFAULT_MAX_OUTSTANDING_RECEIPTS = 64;
+
+    private final int      receiptInterval;
+    private final int      maxOutstandingReceipts;
+    private final Duration receiptTimeout;
+
+    // A receipt for every frame, up to 64 of them outstanding, awaited as long as the client's receipt timeout allows
+    public StompPublishConfig()
+    {
+        this(DEFAULT_RECEIPT_INTERVAL, DEFAULT_MAX_OUTSTANDING_RECEIPTS, null);
+    }
+
+    // A receipt interval of 0 sends without receipts, N asks for a receipt on every Nth frame. The receipt timeout takes
+    // priority over the client's one, null leaves the client's one in place
+    public StompPublishConfig(int receiptInterval, int maxOutstandingReceipts, Duration receiptTimeout)
+    {
+        if (receiptInterval < 0)
+        {
+            throw new IllegalArgumentException("Receipt interval must not be negative: " + receiptInterval);
+        }
+        if (maxOutstandingReceipts <= 0)
+        {
+            throw new IllegalArgumentException("Max outstanding receipts must be positive: " + maxOutstandingReceipts);
+        }
+        if (receiptTimeout != null && (receiptTimeout.isNegative() || receiptTimeout.isZero()))
+        {
+            throw new IllegalArgumentException("Receipt timeout must be positive: " + receiptTimeout);
+        }
+        this.receiptInterval = receiptInterval;
+        this.maxOutstandingReceipts = maxOutstandingReceipts;
+        this.receiptTimeout = receiptTimeout;
+    }
+
+    public int getReceiptInterval()
+    {
+        return receiptInterval;
+    }
+
+    public int getMaxOutstandingReceipts()
+    {
+        return maxOutstandingReceipts;
+    }
+
+    public Duration getReceiptTimeout()
+    {
+        return receiptTimeout;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "StompPublishConfig{" + "receiptInterval=" + receiptInterval + ", maxOutstandingReceipts=" + maxOutstandingReceipts + ", receiptTimeout=" + receiptTimeout + '}';
+    }
+}
@@ -0,0 +1,65 @@
+package com.connector.common.stomp.internal.config;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+public class StompWriteCoalescingConfig
+{
+    private static final int      DEFAULT_MAX_BYTES = 64 * 1024;
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofMillis(1);
+
+    private final int       maxBytes;
+    private final Duration  maxDelay;
+    private final boolean   flushWhenIdle;
+    private final Scheduler scheduler;
+
+    // Latency first: a frame is written right away while the socket has nothing queued, frames only wait while it is busy
+    public StompWriteCoalescingConfig()
+    {
+        this(DEFAULT_MAX_BYTES, DEFAULT_MAX_DELAY, true, null);
+    }
+
+    public StompWriteCoalescingConfig(int maxBytes, Duration maxDelay, boolean flushWhenIdle, Scheduler scheduler)
+    {
+        if (maxBytes <= 0)
+        {
+            throw new IllegalArgumentException("Max bytes must be positive: " + maxBytes);
+        }
+        if (maxDelay == null || maxDelay.isNegative() || maxDelay.isZero())
+        {
+            throw new IllegalArgumentException("Max delay must be positive: " + maxDelay);
+        }
+        this.maxBytes = maxBytes;
+        this.maxDelay = maxDelay;
+        this.flushWhenIdle = flushWhenIdle;
+        this.scheduler = scheduler == null ? Schedulers.parallel() : scheduler;
+    }
+
+    public int getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    public Duration getMaxDelay()
+    {
+        return maxDelay;
+    }
+
+    public boolean isFlushWhenIdle()
+    {
+        return flushWhenIdle;
+    }
+
+    public Scheduler getScheduler()
+    {
+        return scheduler;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "StompWriteCoalescingConfig{" + "maxBytes=" + maxBytes + ", maxDelay=" + maxDelay + ", flushWhenIdle=" + flushWhenIdle + ", scheduler=" + scheduler + '}';
+    }
+}
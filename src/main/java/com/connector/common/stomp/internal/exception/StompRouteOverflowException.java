@@ -0,0 +1,18 @@
+package com.connector.common.stomp.internal.exception;
+
+// A route buffered more frames than it can hold because its stream was not subscribed to or did not keep up
+public class StompRouteOverflowException extends IllegalStateException
+{
+    private final String routeKey;
+
+    public StompRouteOverflowException(String routeKey, int capacity)
+    {
+        super("Route " + routeKey + " overflowed, its stream did not take the " + capacity + " buffered frames in time");
+        this.routeKey = routeKey;
+    }
+
+    public String getRouteKey()
+    {
+        return routeKey;
+    }
+}
@@ -1,54 +1,56 @@
 package com.connector.common.stomp.internal.model;
 
 import com.connector.common.stomp.constant.StompFrameType;
+import com.connector.common.stomp.internal.codec.StompFrameEncoder;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public class StompFrame
 {
-    private final String              body;
+    private static final long UNKNOWN_LENGTH = -1;
+
     private final StompFrameType      type;
     private final Map<String, String> headers;
     private final String              contentType;
-    private final long                contentLength;
+    private final boolean             binaryBody;
+
+    // Body is kept in the representation it was given and the other view is only derived when asked for
+    private volatile String     body;
+    private volatile ByteBuffer bodyBuffer;
+    private volatile long       contentLength;
 
     public StompFrame(Map<String, String> headers, String body, StompFrameType type, String contentType)
     {
-        this.contentType = contentType;
+        this(headers, body, null, false, type, contentType, UNKNOWN_LENGTH);
+    }
+
+    private StompFrame(Map<String, String> headers, String body, ByteBuffer bodyBuffer, boolean binaryBody, StompFrameType type, String contentType, long contentLength)
+    {
+        this.headers = headers;
         this.body = body;
-        if (body == null)
-        {
-            this.contentLength = 0;
-        }
-        else
-        {
-            this.contentLength = body.getBytes(StandardCharsets.UTF_8).length;
-        }
+        this.bodyBuffer = bodyBuffer;
+        this.binaryBody = binaryBody;
         this.type = type;
-        this.headers = headers;
+        this.contentType = contentType;
+        this.contentLength = body == null && bodyBuffer == null ? 0 : contentLength;
     }
 
-    private StompFrame(Map<String, String> headers, StompFrame rawMessage)
+    public static StompFrame binary(Map<String, String> headers, ByteBuffer body, StompFrameType type, String contentType)
     {
-        this.contentType = rawMessage.getContentType();
-        if (rawMessage.getBody() == null)
-        {
-            this.body = null;
-            this.contentLength = 0;
-        }
-        else
-        {
-            this.body = rawMessage.getBody();
-            this.contentLength = rawMessage.getContentLength();
-        }
-        this.type = rawMessage.getType();
-        this.headers = headers;
+        ByteBuffer bodyBuffer = body == null ? null : body.slice().asReadOnlyBuffer();
+        return new StompFrame(headers, null, bodyBuffer, true, type, contentType, bodyBuffer == null ? 0 : bodyBuffer.remaining());
+    }
+
+    public static StompFrame binary(Map<String, String> headers, byte[] body, StompFrameType type, String contentType)
+    {
+        return binary(headers, body == null ? null : ByteBuffer.wrap(body), type, contentType);
     }
 
     public static StompFrame populateHeaders(Map<String, String> headers, StompFrame message)
     {
-        return new StompFrame(headers, message);
+        return new StompFrame(headers, message.body, message.bodyBuffer, message.binaryBody, message.getType(), message.getContentType(), message.contentLength);
     }
 
     public String getContentType()
@@ -58,12 +60,61 @@ public class StompFrame
 
     public long getContentLength()
     {
-        return contentLength;
+        long length = contentLength;
+        if (length == UNKNOWN_LENGTH)
+        {
+            length = StompFrameEncoder.utf8Length(body);
+            contentLength = length;
+        }
+        return length;
     }
 
     public String getBody()
     {
-        return body;
+        String text = body;
+        if (text == null && bodyBuffer != null)
+        {
+            ByteBuffer buffer = bodyBuffer.duplicate();
+            if (buffer.hasArray())
+            {
+                text = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), StandardCharsets.UTF_8);
+            }
+            else
+            {
+                text = StandardCharsets.UTF_8.decode(buffer).toString();
+            }
+            body = text;
+        }
+        return text;
+    }
+
+    // Read-only view of the body octets, positioned at the start of the body
+    public ByteBuffer getBodyBuffer()
+    {
+        ByteBuffer buffer = bodyBuffer;
+        if (buffer == null && body != null)
+        {
+            buffer = ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+            bodyBuffer = buffer;
+        }
+        return buffer == null ? null : buffer.duplicate();
+    }
+
+    public byte[] getBodyBytes()
+    {
+        ByteBuffer buffer = getBodyBuffer();
+        if (buffer == null)
+        {
+            return null;
+        }
+        byte[] octets = new byte[buffer.remaining()];
+        buffer.get(octets);
+        return octets;
+    }
+
+    public boolean isBinaryBody()
+    {
+        return binaryBody;
     }
 
     public StompFrameType getType()
@@ -0,0 +1,314 @@
+package com.connector.common.stomp.internal.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+// Insertion ordered map sized for the handful of headers a stomp frame carries. Keys and values live in two flat arrays
+// and lookups are a linear scan comparing by identity first, so the shared StompHeaders constants never hit equals().
+// Null keys are not supported.
+public class StompHeaderMap extends AbstractMap<String, String>
+{
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private String[] keys;
+    private String[] values;
+    private int      size;
+    private int      modCount;
+
+    public StompHeaderMap()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StompHeaderMap(int initialCapacity)
+    {
+        int capacity = Math.max(initialCapacity, 1);
+        this.keys = new String[capacity];
+        this.values = new String[capacity];
+    }
+
+    public StompHeaderMap(Map<String, String> headers)
+    {
+        this(headers == null ? DEFAULT_CAPACITY : headers.size());
+        if (headers != null)
+        {
+            putAll(headers);
+        }
+    }
+
+    // Adds the header only if it is not present yet, as only the first occurrence of a repeated header is significant
+    public boolean add(String key, String value)
+    {
+        if (key == null)
+        {
+            throw new NullPointerException("Header key must not be null");
+        }
+        if (indexOf(key) >= 0)
+        {
+            return false;
+        }
+        append(key, value);
+        return true;
+    }
+
+    @Override
+    public String get(Object key)
+    {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String put(String key, String value)
+    {
+        if (key == null)
+        {
+            throw new NullPointerException("Header key must not be null");
+        }
+        int index = indexOf(key);
+        if (index >= 0)
+        {
+            String previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        append(key, value);
+        return null;
+    }
+
+    @Override
+    public String remove(Object key)
+    {
+        int index = indexOf(key);
+        if (index < 0)
+        {
+            return null;
+        }
+        String previous = values[index];
+        removeAt(index);
+        return previous;
+    }
+
+    @Override
+    public void clear()
+    {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet()
+    {
+        return new EntrySet();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super String> action)
+    {
+        int expectedModCount = modCount;
+        for (int i = 0; i < size; i++)
+        {
+            action.accept(keys[i], values[i]);
+        }
+        if (modCount != expectedModCount)
+        {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    protected int indexOf(Object key)
+    {
+        if (key == null)
+        {
+            return -1;
+        }
+        int hash = key.hashCode();
+        for (int i = 0; i < size; i++)
+        {
+            String k = keys[i];
+            if (k == key || k.hashCode() == hash && k.equals(key))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void append(String key, String value)
+    {
+        if (size == keys.length)
+        {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+        modCount++;
+    }
+
+    private void removeAt(int index)
+    {
+        int moved = size - index - 1;
+        if (moved > 0)
+        {
+            System.arraycopy(keys, index + 1, keys, index, moved);
+            System.arraycopy(values, index + 1, values, index, moved);
+        }
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        modCount++;
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, String>>
+    {
+        @Override
+        public Iterator<Entry<String, String>> iterator()
+        {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public void clear()
+        {
+            StompHeaderMap.this.clear();
+        }
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, String>>
+    {
+        private int next;
+        private int last             = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext()
+        {
+            return next < size;
+        }
+
+        @Override
+        public Entry<String, String> next()
+        {
+            if (modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= size)
+            {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new HeaderEntry(last);
+        }
+
+        @Override
+        public void remove()
+        {
+            if (last < 0)
+            {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    private class HeaderEntry implements Entry<String, String>
+    {
+        private final int index;
+
+        private HeaderEntry(int index)
+        {
+            this.index = index;
+        }
+
+        @Override
+        public String getKey()
+        {
+            return keys[index];
+        }
+
+        @Override
+        public String getValue()
+        {
+            return values[index];
+        }
+
+        @Override
+        public String setValue(String value)
+        {
+            String previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Entry))
+            {
+                return false;
+            }
+            Entry<?, ?> other = (Entry<?, ?>) o;
+            return eq(getKey(), other.getKey()) && eq(getValue(), other.getValue());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (getKey() == null ? 0 : getKey().hashCode()) ^ (getValue() == null ? 0 : getValue().hashCode());
+        }
+
+        @Override
+        public String toString()
+        {
+            return getKey() + "=" + getValue();
+        }
+
+        private boolean eq(Object a, Object b)
+        {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.connector.common.stomp.internal.model;
+
+public class StompPublishConfirm
+{
+    private final long       sequence;
+    private final StompFrame frame;
+    private final StompFrame receipt;
+
+    public StompPublishConfirm(long sequence, StompFrame frame, StompFrame receipt)
+    {
+        this.sequence = sequence;
+        this.frame = frame;
+        this.receipt = receipt;
+    }
+
+    // Position of the frame in the published stream, starting at 0
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public StompFrame getFrame()
+    {
+        return frame;
+    }
+
+    // The RECEIPT covering the frame, null when the frame was only written to the socket
+    public StompFrame getReceipt()
+    {
+        return receipt;
+    }
+
+    public boolean isReceipted()
+    {
+        return receipt != null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "StompPublishConfirm{" + "sequence=" + sequence + ", frame=" + frame + ", receipt=" + receipt + '}';
+    }
+}
@@ -14,6 +14,15 @@ public interface IWSClient<ConnectConfig extends WSConnectConfig, DisconnectConf
 
     void sendMessage(WSRawMessage request) throws Throwable;
 
+    // Octets accepted by sendMessage and not yet written to the socket
+    long queueSize();
+
+    // Completes once the outbound queue is under its watermarks, see WSWriteGate
+    Mono<Void> awaitWritable();
+
+    // Sends once the outbound queue is under its watermarks instead of overflowing it
+    Mono<Void> sendMessageAsync(WSRawMessage request);
+
     void connect(ConnectConfig wsConnectConfig) throws Throwable;
 
     void disconnect(DisconnectConfig wsDisconnectConfig) throws Throwable;
@@ -29,13 +29,21 @@ public class WSClientBase<ConnectConfig extends WSConnectConfig, DisconnectConfi
     private WSStatus         socketStatus;
     private Flux<WSResponse> messageStream;
     private WebSocket        webSocket;
+    private WSWriteGate      writeGate;
 
     public WSClientBase(String clientId)
     {
         this.clientId = clientId;
         this.socketStatusPublisher = Sinks.many().replay().latest();
         socketStatusPublisher.tryEmitNext(WSStatus.UNINITIALIZED).orThrow();
-        socketStatusStream().subscribe(status -> this.socketStatus = status);
+        socketStatusStream().subscribe(status -> {
+            this.socketStatus = status;
+            // the outbound queue of a socket that is going away never drains, so writers waiting on it are failed
+            if (!status.isConnected())
+            {
+                closeWriteGate();
+            }
+        });
     }
 
     @Override
@@ -108,7 +116,7 @@ public class WSClientBase<ConnectConfig extends WSConnectConfig, DisconnectConfi
             @Override
             public void onMessage(WebSocket webSocket, ByteString bytes)
             {
-                receivePublisher.tryEmitNext(new WSResponse(WSRawMessage.binary(bytes.toByteArray()), webSocket, WSLifecycle.MESSAGE)).orThrow();
+                receivePublisher.tryEmitNext(new WSResponse(WSRawMessage.binary(bytes), webSocket, WSLifecycle.MESSAGE)).orThrow();
             }
 
             @Override
@@ -136,6 +144,7 @@ public class WSClientBase<ConnectConfig extends WSConnectConfig, DisconnectConfi
             return;
         }
         disconnect(webSocket, wsDisconnectConfig.isForceClose(), wsDisconnectConfig.getCode(), wsDisconnectConfig.getReason());
+        closeWriteGate();
     }
 
     @Override
@@ -174,18 +183,53 @@ public class WSClientBase<ConnectConfig extends WSConnectConfig, DisconnectConfi
         {
             throw new IllegalStateException("WebSocket is not connected, the current socket status is " + socketStatus);
         }
+        boolean accepted;
         if (message.getType() == WSRawMessageType.BINARY)
         {
-            webSocket.send(ByteString.of(message.getBinaryData()));
+            accepted = webSocket.send(message.getByteString());
         }
         else if (message.getType() == WSRawMessageType.TEXT)
         {
-            webSocket.send(message.getStringData());
+            accepted = webSocket.send(message.getStringData());
         }
         else
         {
             throw new IllegalArgumentException("Unsupported message type: " + message.getType());
         }
+        if (!accepted)
+        {
+            // OkHttp refuses messages once the socket is closing, or closes it when the outbound queue overflows
+            throw new IllegalStateException("WebSocket did not accept the message, it is closing or its outbound queue of " + webSocket.queueSize() + " octets is full");
+        }
+    }
+
+    @Override
+    public Mono<Void> awaitWritable()
+    {
+        return getWriteGate().awaitWritable();
+    }
+
+    @Override
+    public Mono<Void> sendMessageAsync(WSRawMessage message)
+    {
+        return awaitWritable().then(Mono.fromRunnable(() -> sendMessage(message)));
+    }
+
+    // Watermarks on the outbound queue for awaitWritable and sendMessageAsync, by default 8 MiB and 4 MiB
+    public synchronized void registerWriteWatermarks(long highWatermark, long lowWatermark)
+    {
+        if (this.writeGate != null)
+        {
+            return;
+        }
+        this.writeGate = new WSWriteGate(this, highWatermark, lowWatermark, null, null);
+    }
+
+    @Override
+    public long queueSize()
+    {
+        WebSocket webSocket = this.webSocket;
+        return webSocket == null ? 0 : webSocket.queueSize();
     }
 
     @Override
@@ -194,6 +238,23 @@ public class WSClientBase<ConnectConfig extends WSConnectConfig, DisconnectConfi
         return socketStatus;
     }
 
+    protected synchronized WSWriteGate getWriteGate()
+    {
+        if (writeGate == null)
+        {
+            writeGate = new WSWriteGate(this);
+        }
+        return writeGate;
+    }
+
+    private synchronized void closeWriteGate()
+    {
+        if (writeGate != null)
+        {
+            writeGate.close(new IllegalStateException("WebSocket of " + clientId + " is going away, the current socket status is " + getSocketStatus()));
+        }
+    }
+
     public OkHttpClient getOkHttpClient()
     {
         return okHttpClient;
@@ -0,0 +1,155 @@
+package com.connector.common.websocket.client.base;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Keeps writers from piling up octets in the socket's outbound queue, OkHttp closes the socket once 16 MiB are queued.
+// Writers are parked once the queue reaches the high watermark and let through in arrival order once it drained to the
+// low watermark. OkHttp has no drain callback, so the queue size is polled while writers are parked. The queue of a
+// failed or cancelled socket never drains, so parked writers fail once the socket is no longer connected.
+public class WSWriteGate
+{
+    public static final long     DEFAULT_HIGH_WATERMARK = 8 * 1024 * 1024;
+    public static final long     DEFAULT_LOW_WATERMARK  = 4 * 1024 * 1024;
+    public static final Duration DEFAULT_POLL_INTERVAL  = Duration.ofMillis(1);
+
+    private final IWSClient<?, ?>               wsClient;
+    private final long                          highWatermark;
+    private final long                          lowWatermark;
+    private final Duration                      pollInterval;
+    private final Scheduler                     scheduler;
+    private final ArrayDeque<Sinks.Empty<Void>> parkedWriters;
+
+    private boolean    parked;
+    private Disposable poller;
+
+    public WSWriteGate(IWSClient<?, ?> wsClient)
+    {
+        this(wsClient, DEFAULT_HIGH_WATERMARK, DEFAULT_LOW_WATERMARK, DEFAULT_POLL_INTERVAL, null);
+    }
+
+    public WSWriteGate(IWSClient<?, ?> wsClient, long highWatermark, long lowWatermark, Duration pollInterval, Scheduler scheduler)
+    {
+        if (lowWatermark < 0 || lowWatermark > highWatermark)
+        {
+            throw new IllegalArgumentException("Watermarks must satisfy 0 <= low <= high, but are low = " + lowWatermark + ", high = " + highWatermark);
+        }
+        this.wsClient = wsClient;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.pollInterval = pollInterval == null ? DEFAULT_POLL_INTERVAL : pollInterval;
+        this.scheduler = scheduler == null ? Schedulers.parallel() : scheduler;
+        this.parkedWriters = new ArrayDeque<>();
+    }
+
+    // Completes once the writer may write, right away unless the queue is above the watermarks or writers are parked
+    public Mono<Void> awaitWritable()
+    {
+        return Mono.defer(() -> {
+            if (!wsClient.getSocketStatus().isConnected())
+            {
+                return Mono.error(notConnected());
+            }
+            synchronized (this)
+            {
+                if (parkedWriters.isEmpty() && !isParked())
+                {
+                    return Mono.empty();
+                }
+                Sinks.Empty<Void> parkedWriter = Sinks.empty();
+                parkedWriters.add(parkedWriter);
+                if (poller == null)
+                {
+                    poller = scheduler.schedulePeriodically(this::release, pollInterval.toNanos(), pollInterval.toNanos(), TimeUnit.NANOSECONDS);
+                }
+                return parkedWriter.asMono();
+            }
+        });
+    }
+
+    public synchronized int getParkedWriters()
+    {
+        return parkedWriters.size();
+    }
+
+    // Fails the parked writers and stops polling, called once the socket is no longer connected
+    public void close(Throwable reason)
+    {
+        List<Sinks.Empty<Void>> failedWriters;
+        synchronized (this)
+        {
+            failedWriters = new ArrayList<>(parkedWriters);
+            parkedWriters.clear();
+            parked = false;
+            if (poller != null)
+            {
+                poller.dispose();
+                poller = null;
+            }
+        }
+        for (Sinks.Empty<Void> failedWriter : failedWriters)
+        {
+            failedWriter.tryEmitError(reason);
+        }
+    }
+
+    private void release()
+    {
+        if (!wsClient.getSocketStatus().isConnected())
+        {
+            close(notConnected());
+            return;
+        }
+        while (true)
+        {
+            Sinks.Empty<Void> parkedWriter;
+            synchronized (this)
+            {
+                if (parkedWriters.isEmpty())
+                {
+                    if (poller != null)
+                    {
+                        poller.dispose();
+                        poller = null;
+                    }
+                    return;
+                }
+                if (isParked())
+                {
+                    return;
+                }
+                parkedWriter = parkedWriters.poll();
+            }
+            // the writer writes while being released, so the next check sees what it queued
+            parkedWriter.tryEmitEmpty();
+        }
+    }
+
+    private IllegalStateException notConnected()
+    {
+        return new IllegalStateException("WebSocket is not connected, the current socket status is " + wsClient.getSocketStatus());
+    }
+
+    private boolean isParked()
+    {
+        long queueSize = wsClient.queueSize();
+        if (parked && queueSize <= lowWatermark)
+        {
+            parked = false;
+        }
+        else if (!parked && queueSize >= highWatermark)
+        {
+            parked = true;
+        }
+        return parked;
+    }
+}
@@ -1,18 +1,32 @@
 package com.connector.common.websocket.internal.model;
 
 import com.connector.common.websocket.constant.WSRawMessageType;
+import okio.ByteString;
+
+import java.nio.ByteBuffer;
 
 public class WSRawMessage
 {
     private final WSRawMessageType type;
-    private final byte[]           binaryData;
     private final String           stringData;
+    private final ByteString       byteStringData;
+
+    private byte[] binaryData;
 
     public WSRawMessage(WSRawMessageType type, byte[] binaryData, String stringData)
     {
         this.type = type;
         this.binaryData = binaryData;
         this.stringData = stringData;
+        this.byteStringData = null;
+    }
+
+    private WSRawMessage(ByteString byteStringData)
+    {
+        this.type = WSRawMessageType.BINARY;
+        this.binaryData = null;
+        this.stringData = null;
+        this.byteStringData = byteStringData;
     }
 
     public static WSRawMessage text(String text)
@@ -25,6 +39,11 @@ public class WSRawMessage
         return new WSRawMessage(WSRawMessageType.BINARY, data, null);
     }
 
+    public static WSRawMessage binary(ByteString data)
+    {
+        return new WSRawMessage(data);
+    }
+
     public WSRawMessageType getType()
     {
         return type;
@@ -36,9 +55,44 @@ public class WSRawMessage
         {
             throw new IllegalStateException("This WSRawMessage is not of type " + WSRawMessageType.BINARY);
         }
+        if (binaryData == null && byteStringData != null)
+        {
+            binaryData = byteStringData.toByteArray();
+        }
         return binaryData;
     }
 
+    public ByteBuffer getBinaryBuffer()
+    {
+        if (type != WSRawMessageType.BINARY)
+        {
+            throw new IllegalStateException("This WSRawMessage is not of type " + WSRawMessageType.BINARY);
+        }
+        if (byteStringData != null)
+        {
+            // Shares the received bytes without copying them
+            return byteStringData.asByteBuffer();
+        }
+        if (binaryData == null)
+        {
+            return null;
+        }
+        return ByteBuffer.wrap(binaryData).asReadOnlyBuffer();
+    }
+
+    public ByteString getByteString()
+    {
+        if (type != WSRawMessageType.BINARY)
+        {
+            throw new IllegalStateException("This WSRawMessage is not of type " + WSRawMessageType.BINARY);
+        }
+        if (byteStringData != null)
+        {
+            return byteStringData;
+        }
+        return binaryData == null ? ByteString.EMPTY : ByteString.of(binaryData);
+    }
+
     public String getStringData()
     {
         if (type != WSRawMessageType.TEXT)
@@ -0,0 +1,255 @@
+package com.connector.common.stomp;
+
+import com.connector.common.stomp.client.WSStompClientV11;
+import com.connector.common.stomp.client.WSStompPreparedSend;
+import com.connector.common.stomp.client.WSStompSubscriptionV11;
+import com.connector.common.stomp.constant.StompAckMode;
+import com.connector.common.stomp.constant.StompFrameType;
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.codec.StompFrameAccumulator;
+import com.connector.common.stomp.internal.codec.StompFrameDecoder;
+import com.connector.common.stomp.internal.codec.StompFrameEncoder;
+import com.connector.common.stomp.internal.codec.StompHeaderValueCache;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompHeaderMap;
+import com.connector.common.websocket.client.WSClient;
+import com.connector.common.websocket.constant.WSRawMessageType;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+import okio.ByteString;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class StompFrameCodecTest
+{
+    private final StompFrameDecoder decoder     = new StompFrameDecoder();
+    private final WSStompClientV11  stompClient = new WSStompClientV11("codec-client", new WSClient("codec-client"));
+
+    @Test
+    public void testDecodeMessageFrame()
+    {
+        String raw = "MESSAGE\r\ndestination:/topic/a\nmessage-id:1\nsubscription:ABC\ndestination:/topic/b\n\nhello\0";
+        StompFrame frame = decoder.decode(ByteString.encodeUtf8(raw).asByteBuffer(), false);
+
+        Assertions.assertEquals(StompFrameType.MESSAGE, frame.getType());
+        Assertions.assertEquals("/topic/a", frame.getHeaders().get(StompHeaders.DESTINATION));
+        Assertions.assertEquals("1", frame.getHeaders().get(StompHeaders.MESSAGE_ID));
+        Assertions.assertEquals("ABC", frame.getHeaders().get(StompHeaders.SUBSCRIPTION));
+        Assertions.assertEquals(3, frame.getHeaders().size());
+        Assertions.assertEquals("hello", frame.getBody());
+    }
+
+    @Test
+    public void testDecodedHeadersKeepMapContract()
+    {
+        String raw = "MESSAGE\nsubscription:ABC\nmessage-id:1\nsubscription:DEF\n\n\0";
+        Map<String, String> headers = decoder.decode(ByteBuffer.wrap(raw.getBytes()), false).getHeaders();
+
+        Assertions.assertTrue(headers.containsKey(StompHeaders.MESSAGE_ID));
+        Assertions.assertNull(headers.get(StompHeaders.DESTINATION));
+        Assertions.assertEquals(Arrays.asList(StompHeaders.SUBSCRIPTION, StompHeaders.MESSAGE_ID), new ArrayList<>(headers.keySet()));
+
+        headers.put(StompHeaders.RECEIPT, "r-1");
+        headers.remove(StompHeaders.MESSAGE_ID);
+        Assertions.assertEquals("ABC", headers.get(StompHeaders.SUBSCRIPTION));
+        Assertions.assertEquals("r-1", headers.get(StompHeaders.RECEIPT));
+        Assertions.assertEquals(2, headers.size());
+    }
+
+    @Test
+    public void testDecodedHeaderNamesAndValuesAreShared()
+    {
+        StompFrameDecoder cachingDecoder = new StompFrameDecoder(new StompHeaderValueCache(16));
+        String raw = "MESSAGE\ndestination:/topic/a\nmessage-id:1\nx-custom:1\n\n\0";
+        Map<String, String> first = cachingDecoder.decode(ByteBuffer.wrap(raw.getBytes()), false).getHeaders();
+        Map<String, String> second = cachingDecoder.decode(ByteBuffer.wrap(raw.getBytes()), false).getHeaders();
+
+        Assertions.assertSame(StompHeaders.DESTINATION, first.keySet().iterator().next());
+        Assertions.assertSame(first.get(StompHeaders.DESTINATION), second.get(StompHeaders.DESTINATION));
+        Assertions.assertNotSame(first.get(StompHeaders.MESSAGE_ID), second.get(StompHeaders.MESSAGE_ID));
+        Assertions.assertEquals("1", second.get("x-custom"));
+    }
+
+    @Test
+    public void testHeaderMapKeepsInsertionOrderAndFirstValue()
+    {
+        StompHeaderMap headers = new StompHeaderMap(1);
+        headers.put(StompHeaders.DESTINATION, "/topic/a");
+        Assertions.assertTrue(headers.add(StompHeaders.MESSAGE_ID, "1"));
+        Assertions.assertFalse(headers.add(StompHeaders.DESTINATION, "/topic/b"));
+        headers.put(new String(StompHeaders.CONTENT_LENGTH), "0");
+
+        Assertions.assertEquals("/topic/a", headers.get(new String(StompHeaders.DESTINATION)));
+        Assertions.assertEquals(Arrays.asList(StompHeaders.DESTINATION, StompHeaders.MESSAGE_ID, StompHeaders.CONTENT_LENGTH), new ArrayList<>(headers.keySet()));
+
+        headers.entrySet().removeIf(entry -> entry.getKey().equals(StompHeaders.MESSAGE_ID));
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put(StompHeaders.DESTINATION, "/topic/a");
+        expected.put(StompHeaders.CONTENT_LENGTH, "0");
+        Assertions.assertEquals(expected, headers);
+    }
+
+    @Test
+    public void testDecodeTrimsHeadersAndHonoursContentLength()
+    {
+        String raw = "RECEIPT\nreceipt-id: 77 \ncontent-length:2\n\nhi\0\n";
+        StompFrame frame = decoder.decode(ByteBuffer.wrap(raw.getBytes()), true);
+
+        Assertions.assertEquals(StompFrameType.RECEIPT, frame.getType());
+        Assertions.assertEquals("77", frame.getHeaders().get(StompHeaders.RECEIPT_ID));
+        Assertions.assertEquals("hi", frame.getBody());
+    }
+
+    @Test
+    public void testDecodeTrustsContentLengthForBodiesWithNul()
+    {
+        byte[] raw = "MESSAGE\ncontent-length:4\n\n\0ab\0\0\n".getBytes(StandardCharsets.UTF_8);
+        StompFrame frame = decoder.decode(ByteBuffer.wrap(raw), false);
+        Assertions.assertArrayEquals(new byte[]{ 0, 'a', 'b', 0 }, frame.getBodyBytes());
+
+        Assertions.assertEquals("ab", decoder.decode(ByteBuffer.wrap("MESSAGE\n\nab\0cd\0".getBytes()), false).getBody());
+        Assertions.assertThrows(IllegalStateException.class, () -> decoder.decode(ByteBuffer.wrap("MESSAGE\ncontent-length:1\n\nab\0".getBytes()), false));
+    }
+
+    @Test
+    public void testBinaryBodyRoundTrip()
+    {
+        byte[] payload = new byte[]{ (byte) 0xFF, (byte) 0xFE, 0x01, 0x7F };
+        WSRawMessage encoded = stompClient.encode(StompFrame.binary(new LinkedHashMap<>(), payload, StompFrameType.SEND, null));
+        Assertions.assertEquals(WSRawMessageType.BINARY, encoded.getType());
+
+        StompFrame decoded = decoder.decode(encoded.getBinaryBuffer(), false);
+        Assertions.assertTrue(decoded.isBinaryBody());
+        Assertions.assertArrayEquals(payload, decoded.getBodyBytes());
+        Assertions.assertEquals(payload.length, decoded.getContentLength());
+    }
+
+    @Test
+    public void testEncodeWritesHeadersInOrder()
+    {
+        StompHeaderMap headers = new StompHeaderMap();
+        headers.put(StompHeaders.DESTINATION, "/topic/caf\u00e9");
+        headers.put(StompHeaders.RECEIPT, "r-1");
+        StompFrame textFrame = new StompFrame(headers, "body", StompFrameType.SEND, null);
+        Assertions.assertEquals("SEND\ndestination:/topic/caf\u00e9\nreceipt:r-1\n\nbody\0", new StompFrameEncoder().encode(textFrame).getStringData());
+
+        StompFrame binaryFrame = StompFrame.binary(headers, new byte[]{ 0, 1 }, StompFrameType.SEND, null);
+        byte[] expected = "SEND\ndestination:/topic/caf\u00e9\nreceipt:r-1\n\n\0\1\0".getBytes(StandardCharsets.UTF_8);
+        Assertions.assertArrayEquals(expected, new StompFrameEncoder().encode(binaryFrame).getBinaryData());
+    }
+
+    @Test
+    public void testPreparedSendMatchesFullEncode() throws Throwable
+    {
+        List<WSRawMessage> sent = new ArrayList<>();
+        WSStompClientV11 capturingClient = new WSStompClientV11("prepared-client", new WSClient("prepared-client"))
+        {
+            @Override
+            public void sendRawMessage(WSRawMessage rawMessage)
+            {
+                sent.add(rawMessage);
+            }
+        };
+        WSStompSubscriptionV11 subscription = new WSStompSubscriptionV11("/topic/a", "sub-1", StompAckMode.AUTO, capturingClient);
+        StompHeaderMap headers = new StompHeaderMap();
+        headers.put("x-custom", "1");
+        WSStompPreparedSend preparedSend = WSStompPreparedSend.prepare(subscription, headers, "text/plain");
+
+        preparedSend.send("h\u00e9llo", "r-1");
+        preparedSend.send(new byte[]{ 1, 2, 3 }, null);
+        subscription.sendStompMessage(new StompFrame(new StompHeaderMap(headers), "h\u00e9llo", StompFrameType.SEND, "text/plain"), "r-1");
+
+        Assertions.assertEquals("SEND\nx-custom:1\ndestination:/topic/a\ncontent-type:text/plain\ncontent-length:6\nreceipt:r-1\n\nh\u00e9llo\0", sent.get(0).getStringData());
+        StompFrame binaryFrame = decoder.decode(sent.get(1).getBinaryBuffer(), false);
+        Assertions.assertEquals("/topic/a", binaryFrame.getHeaders().get(StompHeaders.DESTINATION));
+        Assertions.assertEquals("3", binaryFrame.getHeaders().get(StompHeaders.CONTENT_LENGTH));
+        Assertions.assertArrayEquals(new byte[]{ 1, 2, 3 }, binaryFrame.getBodyBytes());
+        Assertions.assertEquals(decoder.decode(ByteBuffer.wrap(sent.get(2).getStringData().getBytes(StandardCharsets.UTF_8)), false).getHeaders(), decoder.decode(ByteBuffer.wrap(sent.get(0).getStringData().getBytes(StandardCharsets.UTF_8)), false).getHeaders());
+        // the receipt is registered before the write, as with sendStompMessage
+        Assertions.assertEquals(1, capturingClient.getPendingReceiptCount());
+    }
+
+    @Test
+    public void testPreparedSendFailsItsReceiptWhenTheWriteFails() throws Throwable
+    {
+        WSStompClientV11 failingClient = new WSStompClientV11("failing-client", new WSClient("failing-client"))
+        {
+            @Override
+            public void sendRawMessage(WSRawMessage rawMessage)
+            {
+                throw new IllegalStateException("closed");
+            }
+        };
+        WSStompPreparedSend preparedSend = WSStompPreparedSend.prepare(failingClient, "/topic/a", new StompHeaderMap(), null);
+        Assertions.assertThrows(IllegalStateException.class, () -> preparedSend.send("body", "r-1"));
+        Assertions.assertEquals(0, failingClient.getPendingReceiptCount());
+    }
+
+    @Test
+    public void testTextBodyContentLength()
+    {
+        StompFrame frame = new StompFrame(new LinkedHashMap<>(), "a\u00e9\u20ac\ud83d\ude00", StompFrameType.SEND, null);
+        Assertions.assertEquals(frame.getBody().getBytes(StandardCharsets.UTF_8).length, frame.getContentLength());
+        Assertions.assertFalse(frame.isBinaryBody());
+        Assertions.assertEquals(WSRawMessageType.TEXT, stompClient.encode(frame).getType());
+    }
+
+    @Test
+    public void testParseFrameTypeFromOctets()
+    {
+        for (StompFrameType type : StompFrameType.values())
+        {
+            byte[] octets = type.name().getBytes(StandardCharsets.US_ASCII);
+            StompFrameType expected = type == StompFrameType.HEARTBEAT ? null : type;
+            Assertions.assertEquals(expected, StompFrameType.parse(ByteBuffer.wrap(octets), 0, octets.length));
+            Assertions.assertEquals(expected, StompFrameType.parse(type.name()));
+        }
+        Assertions.assertNull(StompFrameType.parse(ByteBuffer.wrap("SENT".getBytes()), 0, 4));
+        Assertions.assertNull(StompFrameType.parse(ByteBuffer.wrap("send".getBytes()), 0, 4));
+    }
+
+    @Test
+    public void testAccumulatorSplitsBatchedAndJoinsSplitFrames()
+    {
+        StompFrameAccumulator accumulator = new StompFrameAccumulator(decoder, false);
+        byte[] batch = ("MESSAGE\nmessage-id:1\ncontent-length:3\n\na\0b\0\n" + "MESSAGE\nmessage-id:2\n\nsecond\0\r\n" + "RECEIPT\nreceipt-id:7\n\n\0" + "MESSAGE\nmessage-id:3\nconte").getBytes(StandardCharsets.UTF_8);
+
+        List<StompFrame> frames = accumulator.accept(ByteBuffer.wrap(batch));
+        Assertions.assertEquals(3, frames.size());
+        Assertions.assertArrayEquals(new byte[]{ 'a', 0, 'b' }, frames.get(0).getBodyBytes());
+        Assertions.assertEquals("second", frames.get(1).getBody());
+        Assertions.assertEquals("7", frames.get(2).getHeaders().get(StompHeaders.RECEIPT_ID));
+        Assertions.assertTrue(accumulator.getPendingOctets() > 0);
+
+        frames = accumulator.accept(ByteBuffer.wrap("nt-length:2\n\nhi\0\n".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(1, frames.size());
+        Assertions.assertEquals("3", frames.get(0).getHeaders().get(StompHeaders.MESSAGE_ID));
+        Assertions.assertEquals("hi", frames.get(0).getBody());
+        Assertions.assertEquals(0, accumulator.getPendingOctets());
+
+        frames = accumulator.accept(ByteBuffer.wrap(new byte[]{ '\n' }));
+        Assertions.assertEquals(StompFrameType.HEARTBEAT, frames.get(0).getType());
+    }
+
+    @Test
+    public void testDecodeHeartbeat()
+    {
+        Assertions.assertEquals(StompFrameType.HEARTBEAT, decoder.decode(ByteBuffer.wrap(new byte[]{ '\n' }), false).getType());
+        Assertions.assertEquals(StompFrameType.HEARTBEAT, decoder.decode(ByteBuffer.wrap(new byte[]{ '\r', '\n' }), false).getType());
+    }
+
+    @Test
+    public void testDecodeRejectsInvalidFrames()
+    {
+        Assertions.assertThrows(IllegalStateException.class, () -> decoder.decode(ByteBuffer.wrap("UNKNOWN\n\n\0".getBytes()), false));
+        Assertions.assertThrows(IllegalStateException.class, () -> decoder.decode(ByteBuffer.wrap("MESSAGE\nno-delimiter\n\n\0".getBytes()), false));
+        Assertions.assertThrows(IllegalStateException.class, () -> decoder.decode(ByteBuffer.wrap("MESSAGE\ncontent-length:9\n\nhi\0".getBytes()), false));
+    }
+}
@@ -0,0 +1,100 @@
+package com.connector.common.stomp.benchmark;
+
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.model.StompHeaderMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Compares StompHeaderMap against LinkedHashMap for the header sets stomp frames usually carry.
+// Run from the test classpath: java -cp <test classpath> com.connector.common.stomp.benchmark.StompHeaderMapBenchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StompHeaderMapBenchmark
+{
+    @Param({ "SEND", "MESSAGE", "CONNECTED" })
+    public String frameShape;
+
+    private String[] keys;
+    private String[] values;
+    private String[] lookupKeys;
+
+    @Setup
+    public void setUp()
+    {
+        switch (frameShape)
+        {
+        case "SEND":
+            keys = new String[]{ StompHeaders.DESTINATION, StompHeaders.CONTENT_TYPE, StompHeaders.CONTENT_LENGTH, StompHeaders.RECEIPT };
+            values = new String[]{ "/topic/public/market/snapshot", "application/json", "512", "receipt-1" };
+            lookupKeys = new String[]{ StompHeaders.CONTENT_LENGTH, StompHeaders.RECEIPT };
+            break;
+        case "MESSAGE":
+            keys = new String[]{ StompHeaders.DESTINATION, StompHeaders.CONTENT_TYPE, StompHeaders.SUBSCRIPTION, StompHeaders.MESSAGE_ID, StompHeaders.ACK, StompHeaders.CONTENT_LENGTH };
+            values = new String[]{ "/topic/public/market/snapshot", "application/json", "ABC", "abc-123-456", "ack-789", "512" };
+            lookupKeys = new String[]{ StompHeaders.MESSAGE_ID, StompHeaders.DESTINATION, StompHeaders.SUBSCRIPTION, StompHeaders.ACK };
+            break;
+        case "CONNECTED":
+        default:
+            keys = new String[]{ StompHeaders.VERSION, StompHeaders.HEARTBEAT, StompHeaders.SERVER, StompHeaders.SESSION };
+            values = new String[]{ "1.2", "10000,10000", "RabbitMQ/3.12.0", "session-1" };
+            // copies so lookups cannot take the identity shortcut
+            lookupKeys = new String[]{ new String(StompHeaders.VERSION), new String(StompHeaders.HEARTBEAT), new String(StompHeaders.SESSION) };
+            break;
+        }
+    }
+
+    @Benchmark
+    public void linkedHashMap(Blackhole blackhole)
+    {
+        exercise(new LinkedHashMap<>(), blackhole);
+    }
+
+    @Benchmark
+    public void stompHeaderMap(Blackhole blackhole)
+    {
+        exercise(new StompHeaderMap(), blackhole);
+    }
+
+    // Mirrors a frame lifecycle: populate headers, look up a few of them, then iterate once to encode
+    private void exercise(Map<String, String> headers, Blackhole blackhole)
+    {
+        for (int i = 0; i < keys.length; i++)
+        {
+            headers.put(keys[i], values[i]);
+        }
+        for (String lookupKey : lookupKeys)
+        {
+            blackhole.consume(headers.get(lookupKey));
+        }
+        headers.forEach((key, value) -> {
+            blackhole.consume(key);
+            blackhole.consume(value);
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(StompHeaderMapBenchmark.class.getSimpleName()).build()).run();
+    }
+}
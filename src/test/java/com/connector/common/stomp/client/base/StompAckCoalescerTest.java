@@ -0,0 +1,73 @@
+package com.connector.common.stomp.client.base;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class StompAckCoalescerTest
+{
+    @Test
+    public void testAckIdsAreHeldBackUntilTheDelayPassed() throws Throwable
+    {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        VirtualTimeScheduler timer = VirtualTimeScheduler.create();
+        StompAckCoalescer coalescer = new StompAckCoalescer(3, Duration.ofMillis(10), timer, sent::add);
+
+        coalescer.ack("a-1");
+        coalescer.ack("a-2");
+        Assertions.assertTrue(sent.isEmpty());
+        timer.advanceTimeBy(Duration.ofMillis(10));
+        Assertions.assertEquals(Arrays.asList("a-2"), sent);
+
+        for (int i = 3; i <= 5; i++)
+        {
+            coalescer.ack("a-" + i);
+        }
+        Assertions.assertEquals(Arrays.asList("a-2", "a-5"), sent);
+        Assertions.assertEquals(0, coalescer.getPendingAcks());
+    }
+
+    @Test
+    public void testAcksFromAnotherThreadWhileSendingAreSentNextInOrder() throws Throwable
+    {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        ExecutorService otherThread = Executors.newSingleThreadExecutor();
+        StompAckCoalescer[] coalescer = new StompAckCoalescer[1];
+        coalescer[0] = new StompAckCoalescer(1, null, ackId -> {
+            sent.add(ackId);
+            if (ackId.equals("a-1"))
+            {
+                // a delivery resumed by this ACK is handled and acked on another thread, which must not wait for this one
+                Future<?> ack = otherThread.submit(() -> {
+                    try
+                    {
+                        coalescer[0].ack("a-2");
+                    }
+                    catch (Throwable e)
+                    {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                ack.get(1, TimeUnit.SECONDS);
+            }
+        });
+        try
+        {
+            coalescer[0].ack("a-1");
+        }
+        finally
+        {
+            otherThread.shutdownNow();
+        }
+        Assertions.assertEquals(Arrays.asList("a-1", "a-2"), sent);
+    }
+}
@@ -0,0 +1,111 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.constant.StompAckMode;
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.config.StompConnectConfigV11;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompSessionInfoV11;
+import com.connector.common.websocket.client.base.FakeWSClient;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Connects a STOMP 1.1 client to a fake socket and feeds MESSAGE frames to its subscriptions. Tests with timers call
+// useVirtualTime first, so the client and everything created after it schedule on virtual time.
+public abstract class StompClientTestSupport
+{
+    protected FakeWSClient                                            wsClient;
+    protected WSStompClientBaseV11<StompConnectConfigV11<Void>, Void> stompClient;
+
+    @BeforeEach
+    public void setUp()
+    {
+        connect(new FakeWSClient());
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        VirtualTimeScheduler.reset();
+    }
+
+    protected VirtualTimeScheduler useVirtualTime()
+    {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.getOrSet();
+        connect(new FakeWSClient(scheduler));
+        return scheduler;
+    }
+
+    protected void connect(FakeWSClient wsClient)
+    {
+        this.wsClient = wsClient;
+        stompClient = new WSStompClientBaseV11<StompConnectConfigV11<Void>, Void>("test-client", wsClient)
+        {
+        };
+        stompClient.connectDeliverMessage();
+    }
+
+    protected StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription(String subscriptionId, StompAckMode ackMode)
+    {
+        return new StompSubscriptionBaseV11<>("/topic/" + subscriptionId, subscriptionId, ackMode, stompClient);
+    }
+
+    // The i-th message is acked with ack id a-i
+    protected void receiveMessages(String subscriptionId, String... messageIds)
+    {
+        for (int i = 0; i < messageIds.length; i++)
+        {
+            receiveMessage(subscriptionId, messageIds[i], "a-" + i);
+        }
+    }
+
+    // Message ids and ack ids run from 0 to count - 1
+    protected void receiveMessages(String subscriptionId, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            receiveMessage(subscriptionId, String.valueOf(i), "a-" + i);
+        }
+    }
+
+    // Extra headers are given as name:value, a null ack id leaves the ack header out
+    protected void receiveMessage(String subscriptionId, String messageId, String ackId, String... headers)
+    {
+        StringBuilder frame = new StringBuilder("MESSAGE\nsubscription:").append(subscriptionId).append("\nmessage-id:").append(messageId).append('\n');
+        if (ackId != null)
+        {
+            frame.append("ack:").append(ackId).append('\n');
+        }
+        for (String header : headers)
+        {
+            frame.append(header).append('\n');
+        }
+        wsClient.receive(frame.append("\n\0").toString());
+    }
+
+    protected StompFrame sentFrame(int index)
+    {
+        return stompClient.decode(wsClient.getSent().get(index));
+    }
+
+    // Frame type and id header of every sent frame, the id of an ACK or NACK is its ack id
+    protected List<String> sentCommands()
+    {
+        List<String> commands = new ArrayList<>();
+        for (int i = 0; i < wsClient.getSent().size(); i++)
+        {
+            StompFrame frame = sentFrame(i);
+            commands.add(frame.getType() + " " + frame.getHeaders().get(StompHeaders.ID));
+        }
+        return commands;
+    }
+
+    protected long countSent(String command)
+    {
+        return wsClient.getSent().stream().filter(msg -> msg.getStringData() != null && msg.getStringData().startsWith(command)).count();
+    }
+}
@@ -0,0 +1,83 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.constant.StompAckMode;
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.config.StompConnectConfigV11;
+import com.connector.common.stomp.internal.config.StompDeduplicationConfig;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompSessionInfoV11;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class StompDeduplicatorTest extends StompClientTestSupport
+{
+    @Test
+    public void testRedeliveredMessagesAreDroppedAndAcked() throws Throwable
+    {
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription = subscription("sub-1", StompAckMode.CLIENT_INDIVIDUAL);
+        subscription.registerDeduplication(new StompDeduplicationConfig(StompHeaders.MESSAGE_ID, 2, Duration.ofMinutes(1), 100, 0.01));
+        List<String> handled = new ArrayList<>();
+        subscription.registerResponseHandler(frame -> {
+            String messageId = frame.getHeaders().get(StompHeaders.MESSAGE_ID);
+            handled.add(messageId);
+            return "2".equals(messageId) && handled.size() == 2 ? new IllegalStateException("first attempt fails") : null;
+        });
+        subscription.subscribe(null);
+
+        // 1 is evicted from the recent ids by 3 and 4, the filter still knows it
+        receiveMessages("sub-1", "1", "2", "1", "2", "3", "4", "1");
+
+        Assertions.assertEquals(Arrays.asList("1", "2", "2", "3", "4"), handled);
+        Assertions.assertEquals(2, subscription.getDeduplicator().getDuplicateCount());
+        Assertions.assertEquals(Arrays.asList("SUBSCRIBE sub-1", "ACK a-0", "NACK a-1", "ACK a-2", "ACK a-3", "ACK a-4", "ACK a-5", "ACK a-6"), sentCommands());
+    }
+
+    @Test
+    public void testRedeliveredMessagesAreAckedInOrderInClientMode() throws Throwable
+    {
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription = subscription("sub-1", StompAckMode.CLIENT);
+        subscription.registerDeduplication(new StompDeduplicationConfig(StompHeaders.MESSAGE_ID, 10, Duration.ofMinutes(1), 0, 0.01));
+        List<String> handled = new ArrayList<>();
+        subscription.registerResponseHandler(frame -> {
+            handled.add(frame.getHeaders().get(StompHeaders.MESSAGE_ID));
+            return null;
+        });
+        subscription.subscribe(null);
+
+        // after a reconnect the broker redelivers what it did not see acked
+        receiveMessages("sub-1", "1", "2", "1", "2", "3");
+        Assertions.assertEquals(Arrays.asList("1", "2", "3"), handled);
+        Assertions.assertEquals(Arrays.asList("SUBSCRIBE sub-1", "ACK a-0", "ACK a-1", "ACK a-2", "ACK a-3", "ACK a-4"), sentCommands());
+    }
+
+    @Test
+    public void testFailedAckOfADuplicateBatchFailsTheBatchStream() throws Throwable
+    {
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription = subscription("sub-1", StompAckMode.CLIENT);
+        subscription.registerDeduplication(new StompDeduplicationConfig(StompHeaders.MESSAGE_ID, 10, Duration.ofMinutes(1), 0, 0.01));
+        subscription.registerBatchDelivery(2, null);
+        subscription.registerBatchResponseHandler(frames -> null);
+        subscription.subscribe(null);
+        List<List<StompFrame>> handledBatches = new CopyOnWriteArrayList<>();
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        subscription.deliverBatchStream().subscribe(handledBatches::add, failures::add);
+
+        receiveMessage("sub-1", "1", "a-0");
+        receiveMessage("sub-1", "2", "a-1");
+        wsClient.setSendFailure(new IllegalStateException("socket gone"));
+        receiveMessage("sub-1", "1", "a-2");
+        receiveMessage("sub-1", "2", "a-3");
+
+        // the batch of redelivered duplicates is only acked, and that ACK failed
+        Assertions.assertEquals(1, handledBatches.size());
+        Assertions.assertEquals(1, failures.size());
+        Assertions.assertEquals("socket gone", failures.get(0).getMessage());
+    }
+}
@@ -0,0 +1,161 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.constant.StompAckMode;
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.constant.StompOverflowStrategy;
+import com.connector.common.stomp.constant.StompSubscriptionStatus;
+import com.connector.common.stomp.internal.config.StompConnectConfigV11;
+import com.connector.common.stomp.internal.config.StompDeliveryQueueConfig;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompSessionInfoV11;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class StompDeliveryQueueTest extends StompClientTestSupport
+{
+    @Test
+    public void testDeliveryQueueAppliesOverflowStrategy()
+    {
+        List<StompFrame> dropOldest = deliverWithoutDemand(StompOverflowStrategy.DROP_OLDEST, 5);
+        Assertions.assertEquals(2, dropOldest.size());
+        Assertions.assertEquals("3", dropOldest.get(0).getHeaders().get(StompHeaders.MESSAGE_ID));
+        List<StompFrame> dropNewest = deliverWithoutDemand(StompOverflowStrategy.DROP_NEWEST, 5);
+        Assertions.assertEquals("0", dropNewest.get(0).getHeaders().get(StompHeaders.MESSAGE_ID));
+        List<StompFrame> latestOnly = deliverWithoutDemand(StompOverflowStrategy.LATEST_ONLY, 5);
+        Assertions.assertEquals(1, latestOnly.size());
+        Assertions.assertEquals("4", latestOnly.get(0).getHeaders().get(StompHeaders.MESSAGE_ID));
+
+        StompDeliveryQueue queue = new StompDeliveryQueue("failing", new StompDeliveryQueueConfig(2, StompOverflowStrategy.FAIL, Schedulers.immediate()));
+        Throwable[] failure = new Throwable[1];
+        queue.connect(stompClient.registerSubscriptionRoute("sub-fail", "/topic/a")).subscribe(new BaseSubscriber<StompFrame>()
+        {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription)
+            {
+            }
+
+            @Override
+            protected void hookOnError(Throwable throwable)
+            {
+                failure[0] = throwable;
+            }
+        });
+        receiveMessages("sub-fail", 3);
+        Assertions.assertTrue(failure[0] instanceof IllegalStateException);
+        Assertions.assertEquals(3, queue.getDroppedCount());
+    }
+
+    @Test
+    public void testOverflowingDeliveryQueueFailsTheSubscription() throws Throwable
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription = subscription("sub-1", StompAckMode.AUTO);
+        subscription.registerDeliveryQueue(new StompDeliveryQueueConfig(1, StompOverflowStrategy.FAIL, Schedulers.single()));
+        subscription.registerResponseHandler(frame -> {
+            try
+            {
+                release.await(1, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        subscription.subscribe(null);
+        Throwable[] failure = new Throwable[1];
+        subscription.deliverMessageStream().subscribe(null, e -> failure[0] = e);
+
+        // one frame in the handler, one queued, the third overflows
+        receiveMessages("sub-1", 3);
+        release.countDown();
+        subscription.waitSubscriptionStatus(StompSubscriptionStatus.UNSUBSCRIBED).block(Duration.ofSeconds(1));
+        Assertions.assertEquals(Arrays.asList("SUBSCRIBE sub-1", "UNSUBSCRIBE sub-1"), sentCommands());
+        Assertions.assertTrue(failure[0] instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testConflatingQueueKeepsLatestFramePerKey()
+    {
+        List<String> superseded = new ArrayList<>();
+        StompDeliveryQueue queue = new StompDeliveryQueue("conflating", new StompDeliveryQueueConfig(10, null, Schedulers.immediate(), frame -> frame.getHeaders().get("symbol")), frame -> superseded.add(frame.getHeaders().get(StompHeaders.MESSAGE_ID)));
+        List<StompFrame> received = new ArrayList<>();
+        BaseSubscriber<StompFrame> subscriber = demandOnRequest(received);
+        queue.connect(stompClient.registerSubscriptionRoute("sub-snapshot", "/topic/snapshot")).subscribe(subscriber);
+        String[] symbols = {"BTC", "ETH", "BTC", "BTC", "ETH"};
+        for (int i = 0; i < symbols.length; i++)
+        {
+            receiveMessage("sub-snapshot", String.valueOf(i), null, "symbol:" + symbols[i]);
+        }
+        Assertions.assertEquals(2, queue.getDepth());
+        Assertions.assertEquals(3, queue.getConflatedCount());
+        Assertions.assertEquals(Arrays.asList("0", "2", "1"), superseded);
+
+        subscriber.request(Long.MAX_VALUE);
+        Assertions.assertEquals(2, received.size());
+        Assertions.assertEquals("3", received.get(0).getHeaders().get(StompHeaders.MESSAGE_ID));
+        Assertions.assertEquals("4", received.get(1).getHeaders().get(StompHeaders.MESSAGE_ID));
+
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> cumulative = subscription("sub-client", StompAckMode.CLIENT);
+        Assertions.assertThrows(IllegalStateException.class, () -> cumulative.registerConflation("symbol", 10));
+    }
+
+    @Test
+    public void testLossyDeliveryQueuesAreRefusedWithCumulativeAcks()
+    {
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> cumulative = subscription("sub-client", StompAckMode.CLIENT);
+        for (StompOverflowStrategy overflowStrategy : Arrays.asList(StompOverflowStrategy.DROP_NEWEST, StompOverflowStrategy.DROP_OLDEST, StompOverflowStrategy.LATEST_ONLY))
+        {
+            Assertions.assertThrows(IllegalStateException.class, () -> cumulative.registerDeliveryQueue(new StompDeliveryQueueConfig(4, overflowStrategy, null)));
+        }
+        // without losing frames a cumulative ACK only covers handled ones
+        cumulative.registerDeliveryQueue(new StompDeliveryQueueConfig(4, StompOverflowStrategy.BLOCK, null));
+
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> individual = subscription("sub-individual", StompAckMode.CLIENT_INDIVIDUAL);
+        Assertions.assertDoesNotThrow(() -> individual.registerDeliveryQueue(new StompDeliveryQueueConfig(4, StompOverflowStrategy.DROP_OLDEST, null)));
+    }
+
+    private List<StompFrame> deliverWithoutDemand(StompOverflowStrategy overflowStrategy, int count)
+    {
+        String subscriptionId = "sub-" + overflowStrategy;
+        StompDeliveryQueue queue = new StompDeliveryQueue(subscriptionId, new StompDeliveryQueueConfig(2, overflowStrategy, Schedulers.immediate()));
+        List<StompFrame> received = new ArrayList<>();
+        BaseSubscriber<StompFrame> subscriber = demandOnRequest(received);
+        queue.connect(stompClient.registerSubscriptionRoute(subscriptionId, "/topic/a")).subscribe(subscriber);
+        receiveMessages(subscriptionId, count);
+        Assertions.assertEquals(overflowStrategy == StompOverflowStrategy.LATEST_ONLY ? 1 : 2, queue.getDepth());
+        Assertions.assertEquals(overflowStrategy == StompOverflowStrategy.LATEST_ONLY ? count - 1 : count - 2, queue.getDroppedCount());
+        subscriber.request(Long.MAX_VALUE);
+        Assertions.assertEquals(0, queue.getDepth());
+        return received;
+    }
+
+    // No demand until the test requests, so every frame is routed into the queue first
+    private static BaseSubscriber<StompFrame> demandOnRequest(List<StompFrame> received)
+    {
+        return new BaseSubscriber<StompFrame>()
+        {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription)
+            {
+            }
+
+            @Override
+            protected void hookOnNext(StompFrame value)
+            {
+                received.add(value);
+            }
+        };
+    }
+}
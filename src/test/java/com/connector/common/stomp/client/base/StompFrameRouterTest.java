@@ -0,0 +1,89 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.constant.StompFrameType;
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.exception.StompRouteOverflowException;
+import com.connector.common.stomp.internal.model.StompFrame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.util.concurrent.Queues;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StompFrameRouterTest extends StompClientTestSupport
+{
+    @Test
+    public void testMessagesAreRoutedBySubscriptionIdOrDestination()
+    {
+        List<StompFrame> first = new ArrayList<>();
+        List<StompFrame> noId = new ArrayList<>();
+        boolean[] completed = new boolean[1];
+        stompClient.registerSubscriptionRoute("sub-1", "/topic/a").subscribe(first::add, err -> {}, () -> completed[0] = true);
+        stompClient.registerSubscriptionRoute(null, "/topic/b").subscribe(noId::add);
+
+        wsClient.receive("MESSAGE\nsubscription:sub-1\nmessage-id:1\ndestination:/topic/a\n\n\0");
+        wsClient.receive("MESSAGE\nsubscription:sub-2\nmessage-id:2\ndestination:/topic/a\n\n\0");
+        wsClient.receive("MESSAGE\nmessage-id:3\ndestination:/topic/b\n\n\0");
+        wsClient.receive("RECEIPT\nreceipt-id:1\n\n\0");
+
+        Assertions.assertEquals(1, first.size());
+        Assertions.assertEquals("1", first.get(0).getHeaders().get(StompHeaders.MESSAGE_ID));
+        Assertions.assertEquals(1, noId.size());
+        Assertions.assertEquals("3", noId.get(0).getHeaders().get(StompHeaders.MESSAGE_ID));
+
+        stompClient.deregisterSubscriptionRoute("sub-1", "/topic/a");
+        Assertions.assertTrue(completed[0]);
+        receiveMessage("sub-1", "4", null, "destination:/topic/a");
+        Assertions.assertEquals(1, first.size());
+    }
+
+    @Test
+    public void testMessagesRoutedBeforeSubscribingAreBuffered()
+    {
+        Flux<StompFrame> route = stompClient.registerSubscriptionRoute("sub-1", "/topic/a");
+        receiveMessage("sub-1", "1", null, "destination:/topic/a");
+
+        List<StompFrame> received = new ArrayList<>();
+        route.subscribe(received::add);
+        Assertions.assertEquals(1, received.size());
+        Assertions.assertEquals(StompFrameType.MESSAGE, received.get(0).getType());
+    }
+
+    @Test
+    public void testOverflowingAnUnsubscribedRouteFailsIt()
+    {
+        Flux<StompFrame> route = stompClient.registerSubscriptionRoute("sub-1", "/topic/a");
+        receiveMessages("sub-1", Queues.SMALL_BUFFER_SIZE + 1);
+        Assertions.assertEquals(1, stompClient.getRouteDroppedCount());
+
+        List<StompFrame> received = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        route.subscribe(received::add, failures::add);
+        Assertions.assertEquals(1, failures.size());
+        Assertions.assertTrue(failures.get(0) instanceof StompRouteOverflowException);
+
+        // the failed route is gone, registering the key again starts a fresh one
+        List<StompFrame> fresh = new ArrayList<>();
+        stompClient.registerSubscriptionRoute("sub-1", "/topic/a").subscribe(fresh::add);
+        receiveMessage("sub-1", "next", null);
+        Assertions.assertEquals(1, fresh.size());
+    }
+
+    @Test
+    public void testTransactionFramesAreIndexedByTransactionId()
+    {
+        List<StompFrame> received = new ArrayList<>();
+        stompClient.registerTransactionRoute("tx-1").subscribe(received::add);
+
+        receiveMessage("sub-1", "1", null, "transaction:tx-1");
+        receiveMessage("sub-1", "2", null, "transaction:tx-2");
+        wsClient.receive("RECEIPT\nreceipt-id:9\ntransaction:tx-1\n\n\0");
+        stompClient.deregisterTransactionRoute("tx-1");
+        receiveMessage("sub-1", "3", null, "transaction:tx-1");
+
+        Assertions.assertEquals(2, received.size());
+        Assertions.assertEquals(StompFrameType.RECEIPT, received.get(1).getType());
+    }
+}
@@ -0,0 +1,61 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.constant.StompAckMode;
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.config.StompConnectConfigV11;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompSessionInfoV11;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Sinks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class StompPrefetchWindowTest extends StompClientTestSupport
+{
+    @Test
+    public void testPrefetchWindowHoldsBackMessagesUntilAcked() throws Throwable
+    {
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription = subscription("sub-1", StompAckMode.CLIENT_INDIVIDUAL);
+        subscription.registerPrefetchWindow(2, true);
+        Map<String, Sinks.Empty<Void>> pending = new ConcurrentHashMap<>();
+        subscription.registerAsyncResponseHandler(frame -> pending.computeIfAbsent(frame.getHeaders().get(StompHeaders.MESSAGE_ID), k -> Sinks.empty()).asMono(), 10);
+        subscription.subscribe(null);
+        StompFrame subscribe = sentFrame(0);
+        Assertions.assertEquals("2", subscribe.getHeaders().get(StompHeaders.ACTIVEMQ_PREFETCH_SIZE));
+        Assertions.assertEquals("2", subscribe.getHeaders().get(StompHeaders.PREFETCH_COUNT));
+
+        receiveMessages("sub-1", 4);
+        Assertions.assertEquals(2, pending.size());
+        Assertions.assertEquals(2, subscription.getPrefetchWindow().getUnacked());
+
+        pending.get("1").tryEmitEmpty();
+        Assertions.assertEquals(3, pending.size());
+        Assertions.assertTrue(pending.containsKey("2"));
+        Assertions.assertEquals(Arrays.asList("SUBSCRIBE sub-1", "ACK a-1"), sentCommands());
+    }
+
+    @Test
+    public void testCoalescedAcksFreeThePrefetchWindow() throws Throwable
+    {
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription = subscription("sub-1", StompAckMode.CLIENT);
+        subscription.registerPrefetchWindow(2, false);
+        subscription.registerAckCoalescing(10, null);
+        List<String> handled = new CopyOnWriteArrayList<>();
+        subscription.registerResponseHandler(frame -> {
+            handled.add(frame.getHeaders().get(StompHeaders.MESSAGE_ID));
+            return null;
+        });
+        subscription.subscribe(null);
+
+        receiveMessages("sub-1", 5);
+        Assertions.assertEquals(Arrays.asList("0", "1", "2", "3", "4"), handled);
+        Assertions.assertEquals(0, subscription.getPrefetchWindow().getUnacked());
+        Assertions.assertEquals(Arrays.asList("SUBSCRIBE sub-1"), sentCommands());
+    }
+}
@@ -0,0 +1,93 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.constant.StompFrameType;
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.config.StompPublishConfig;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompPublishConfirm;
+import com.connector.common.websocket.constant.WSStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+
+public class StompPublisherTest extends StompClientTestSupport
+{
+    @Test
+    public void testSendAllPipelinesReceiptsWithinTheWindow() throws Throwable
+    {
+        List<StompPublishConfirm> confirms = new CopyOnWriteArrayList<>();
+        Flux<StompFrame> frames = Flux.range(0, 5).map(i -> new StompFrame(null, "bulk-" + i, StompFrameType.SEND, null));
+        stompClient.sendAll(frames, new StompPublishConfig(2, 1, null)).subscribe(confirms::add);
+
+        // the second frame asks for a receipt, the fourth waits for it before being sent
+        Assertions.assertEquals(3, wsClient.getSent().size());
+        Assertions.assertNull(receiptOf(0));
+        Assertions.assertTrue(confirms.isEmpty());
+
+        wsClient.receive("RECEIPT\nreceipt-id:" + receiptOf(1) + "\n\n\0");
+        Assertions.assertEquals(Arrays.asList(0L, 1L), sequences(confirms));
+        // the last frame is sent right away, without waiting for the stream to complete
+        Assertions.assertEquals(5, wsClient.getSent().size());
+        Assertions.assertNull(receiptOf(4));
+
+        wsClient.receive("RECEIPT\nreceipt-id:" + receiptOf(3) + "\n\n\0");
+        // the frame after the last receipted one is confirmed as sent once the stream completed
+        Assertions.assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), sequences(confirms));
+        Assertions.assertTrue(confirms.get(2).isReceipted());
+        Assertions.assertEquals("bulk-2", confirms.get(2).getFrame().getBody());
+        Assertions.assertFalse(confirms.get(4).isReceipted());
+        Assertions.assertEquals(0, stompClient.getPendingReceiptCount());
+    }
+
+    @Test
+    public void testFailedPublishSendLeavesNoReceiptBehind()
+    {
+        Flux<StompFrame> frames = Flux.just(new StompFrame(null, "lost", StompFrameType.SEND, null));
+        wsClient.setSocketStatus(WSStatus.FAILED);
+        StepVerifier.create(stompClient.sendAll(frames, new StompPublishConfig())).verifyError(IllegalStateException.class);
+        Assertions.assertEquals(0, stompClient.getPendingReceiptCount());
+
+        wsClient.setSocketStatus(WSStatus.OPEN);
+        wsClient.setSendFailure(new IllegalStateException("socket gone"));
+        StepVerifier.create(stompClient.sendAll(frames, new StompPublishConfig())).verifyError(IllegalStateException.class);
+        Assertions.assertEquals(0, stompClient.getPendingReceiptCount());
+        Assertions.assertTrue(wsClient.getSent().isEmpty());
+    }
+
+    @Test
+    public void testPublishReceiptTimeoutTakesPriorityOverTheClientOne()
+    {
+        VirtualTimeScheduler scheduler = useVirtualTime();
+        stompClient.registerReceiptTimeout(Duration.ofSeconds(30));
+        Flux<StompPublishConfirm> confirms = stompClient.sendAll(Flux.just(new StompFrame(null, "late", StompFrameType.SEND, null)), new StompPublishConfig(1, 1, Duration.ofMillis(50)));
+        StepVerifier.withVirtualTime(() -> confirms, () -> scheduler, Long.MAX_VALUE)
+                    .expectSubscription()
+                    .thenAwait(Duration.ofMillis(50))
+                    .verifyError(TimeoutException.class);
+        Assertions.assertEquals(0, stompClient.getPendingReceiptCount());
+    }
+
+    private String receiptOf(int sent)
+    {
+        return sentFrame(sent).getHeaders().get(StompHeaders.RECEIPT);
+    }
+
+    private static List<Long> sequences(List<StompPublishConfirm> confirms)
+    {
+        List<Long> sequences = new ArrayList<>();
+        for (StompPublishConfirm confirm : confirms)
+        {
+            sequences.add(confirm.getSequence());
+        }
+        return sequences;
+    }
+}
@@ -0,0 +1,163 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.constant.StompAckMode;
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.config.StompConnectConfigV11;
+import com.connector.common.stomp.internal.config.StompPartitionConfig;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompSessionInfoV11;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class StompSubscriptionBaseTest extends StompClientTestSupport
+{
+    @Test
+    public void testDeliveryStreamCanBeReconnectedToItsRoute() throws Throwable
+    {
+        List<String> handled = new CopyOnWriteArrayList<>();
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription = subscription("sub-1", StompAckMode.AUTO);
+        subscription.registerResponseHandler(frame -> {
+            handled.add(frame.getHeaders().get(StompHeaders.MESSAGE_ID));
+            return null;
+        });
+        subscription.subscribe(null);
+        receiveMessage("sub-1", "1", null);
+
+        subscription.disconnectDeliverMessage();
+        subscription.connectDeliverMessage();
+        receiveMessage("sub-1", "2", null);
+        Assertions.assertEquals(Arrays.asList("1", "2"), handled);
+    }
+
+    @Test
+    public void testPartitionedLanesKeepOrderPerKeyAndAckEveryMessage() throws Throwable
+    {
+        Scheduler lanes = Schedulers.newParallel("stomp-lane", 4);
+        try
+        {
+            StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription = subscription("sub-1", StompAckMode.CLIENT_INDIVIDUAL);
+            subscription.registerPartitioning(new StompPartitionConfig(frame -> frame.getHeaders().get("symbol"), 4, lanes));
+            Map<String, List<Integer>> handled = new ConcurrentHashMap<>();
+            subscription.registerResponseHandler(frame -> {
+                handled.computeIfAbsent(frame.getHeaders().get("symbol"), k -> new CopyOnWriteArrayList<>()).add(Integer.parseInt(frame.getHeaders().get(StompHeaders.MESSAGE_ID)));
+                return null;
+            });
+            subscription.subscribe(null);
+
+            String[] symbols = {"BTC", "ETH", "SOL"};
+            for (int i = 0; i < 30; i++)
+            {
+                receiveMessage("sub-1", String.valueOf(i), "a-" + i, "symbol:" + symbols[i % 3]);
+            }
+
+            // the SUBSCRIBE and one ACK per message, sent from the lanes
+            Assertions.assertTrue(wsClient.awaitSent(31, Duration.ofSeconds(1)));
+            Assertions.assertEquals(30, countSent("ACK\n"));
+            for (List<Integer> ids : handled.values())
+            {
+                Assertions.assertEquals(10, ids.size());
+                for (int i = 1; i < ids.size(); i++)
+                {
+                    Assertions.assertTrue(ids.get(i - 1) < ids.get(i));
+                }
+            }
+
+            StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> cumulative = subscription("sub-2", StompAckMode.CLIENT);
+            Assertions.assertThrows(IllegalStateException.class, () -> cumulative.registerPartitioning("symbol", 4));
+        }
+        finally
+        {
+            lanes.dispose();
+        }
+    }
+
+    @Test
+    public void testBatchesAreAckedCumulativelyInClientMode() throws Throwable
+    {
+        VirtualTimeScheduler scheduler = useVirtualTime();
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription = subscription("sub-1", StompAckMode.CLIENT);
+        subscription.registerBatchDelivery(3, Duration.ofMillis(50));
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        subscription.registerBatchResponseHandler(frames -> {
+            batchSizes.add(frames.size());
+            return batchSizes.size() == 2 ? new IllegalStateException("write failed") : null;
+        });
+        subscription.subscribe(null);
+        List<List<StompFrame>> handledBatches = new CopyOnWriteArrayList<>();
+        subscription.deliverBatchStream().subscribe(handledBatches::add);
+
+        receiveMessages("sub-1", 7);
+        Assertions.assertEquals(Arrays.asList(3, 3), batchSizes);
+        // the trailing frame is handled once the max latency passed
+        scheduler.advanceTimeBy(Duration.ofMillis(50));
+
+        Assertions.assertEquals(Arrays.asList(3, 3, 1), batchSizes);
+        Assertions.assertEquals(2, handledBatches.size());
+        Assertions.assertEquals(Arrays.asList("SUBSCRIBE sub-1", "ACK a-2", "NACK a-5", "ACK a-6"), sentCommands());
+        Assertions.assertThrows(IllegalStateException.class, () -> subscription.registerAsyncResponseHandler(frame -> Mono.empty(), 2));
+
+        // without a max latency only full batches are handled
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> unbounded = subscription("sub-2", StompAckMode.AUTO);
+        unbounded.registerBatchDelivery(2, null);
+        List<Integer> unboundedSizes = new CopyOnWriteArrayList<>();
+        unbounded.registerBatchResponseHandler(frames -> {
+            unboundedSizes.add(frames.size());
+            return null;
+        });
+        unbounded.subscribe(null);
+        receiveMessages("sub-2", 5);
+        Assertions.assertEquals(Arrays.asList(2, 2), unboundedSizes);
+    }
+
+    @Test
+    public void testClientAcksAreCoalescedAndFlushedBeforeNackAndUnsubscribe() throws Throwable
+    {
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription = subscription("sub-1", StompAckMode.CLIENT);
+        subscription.registerAckCoalescing(3, Duration.ofMinutes(1));
+        subscription.registerResponseHandler(frame -> "5".equals(frame.getHeaders().get(StompHeaders.MESSAGE_ID)) ? new IllegalStateException("handler failed") : null);
+        subscription.subscribe(null);
+
+        receiveMessages("sub-1", 7);
+        subscription.unsubscribe(null);
+
+        Assertions.assertEquals(Arrays.asList("SUBSCRIBE sub-1", "ACK a-2", "ACK a-4", "NACK a-5", "ACK a-6", "UNSUBSCRIBE sub-1"), sentCommands());
+
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> individual = subscription("sub-2", StompAckMode.CLIENT_INDIVIDUAL);
+        Assertions.assertThrows(IllegalStateException.class, () -> individual.registerAckCoalescing(3, Duration.ofMillis(10)));
+    }
+
+    @Test
+    public void testAsyncHandlerAcksInOrderOnlyInClientMode() throws Throwable
+    {
+        VirtualTimeScheduler scheduler = useVirtualTime();
+        Assertions.assertEquals(Arrays.asList("ACK a-0", "ACK a-1", "ACK a-2", "ACK a-3"), handleAsync(scheduler, StompAckMode.CLIENT));
+        wsClient.getSent().clear();
+        Assertions.assertEquals(Arrays.asList("ACK a-3", "ACK a-2", "ACK a-1", "ACK a-0"), handleAsync(scheduler, StompAckMode.CLIENT_INDIVIDUAL));
+    }
+
+    private List<String> handleAsync(VirtualTimeScheduler scheduler, StompAckMode ackMode) throws Throwable
+    {
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription = subscription("sub-" + ackMode, ackMode);
+        // later messages finish first
+        subscription.registerAsyncResponseHandler(frame -> Mono.delay(Duration.ofMillis(40L * (4 - Integer.parseInt(frame.getHeaders().get(StompHeaders.MESSAGE_ID))))).then(), 4);
+        subscription.subscribe(null);
+        receiveMessages("sub-" + ackMode, 4);
+        Assertions.assertEquals(0, countSent("ACK\n"));
+
+        scheduler.advanceTimeBy(Duration.ofMillis(160));
+        List<String> commands = sentCommands();
+        return commands.subList(1, commands.size());
+    }
+}
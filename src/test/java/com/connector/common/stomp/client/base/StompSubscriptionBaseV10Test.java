@@ -0,0 +1,46 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.constant.StompAckMode;
+import com.connector.common.stomp.constant.StompFrameType;
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.internal.config.StompConnectConfigV10;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompSessionInfoV10;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class StompSubscriptionBaseV10Test extends StompClientTestSupport
+{
+    @Test
+    public void testStomp10MessagesAreAckedOnlyOnceHandled() throws Throwable
+    {
+        WSStompClientBaseV10<StompConnectConfigV10, Void> clientV10 = new WSStompClientBaseV10<StompConnectConfigV10, Void>("test-client-v10", wsClient)
+        {
+        };
+        clientV10.connectDeliverMessage();
+        StompSubscriptionBaseV10<StompConnectConfigV10, Void, StompSessionInfoV10, WSRawMessage> subscription = new StompSubscriptionBaseV10<>("/topic/a", "sub-1", StompAckMode.CLIENT, clientV10);
+        subscription.registerResponseHandler(frame -> "2".equals(frame.getHeaders().get(StompHeaders.MESSAGE_ID)) ? new IllegalStateException("handler failed") : null);
+        subscription.subscribe(null);
+        for (int i = 1; i <= 3; i++)
+        {
+            receiveMessage("sub-1", String.valueOf(i), null);
+        }
+
+        // 1.0 has no NACK, the failed message is left for the broker to redeliver
+        List<String> ackedIds = new ArrayList<>();
+        for (WSRawMessage msg : wsClient.getSent())
+        {
+            StompFrame frame = clientV10.decode(msg);
+            if (frame.getType() == StompFrameType.ACK)
+            {
+                ackedIds.add(frame.getHeaders().get(StompHeaders.MESSAGE_ID));
+            }
+        }
+        Assertions.assertEquals(Arrays.asList("1", "3"), ackedIds);
+    }
+}
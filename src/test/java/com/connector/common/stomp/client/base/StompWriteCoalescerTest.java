@@ -0,0 +1,94 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.constant.StompFrameType;
+import com.connector.common.stomp.internal.codec.StompFrameAccumulator;
+import com.connector.common.stomp.internal.codec.StompFrameDecoder;
+import com.connector.common.stomp.internal.config.StompWriteCoalescingConfig;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.websocket.client.base.FakeWSClient;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+public class StompWriteCoalescerTest extends StompClientTestSupport
+{
+    @Test
+    public void testWritesAreCoalescedWhileTheSocketIsBusy() throws Throwable
+    {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+        stompClient.registerWriteCoalescing(new StompWriteCoalescingConfig(1024, Duration.ofMillis(20), true, scheduler));
+        send("idle");
+        Assertions.assertEquals(1, wsClient.getSent().size());
+
+        wsClient.setQueueSize(FakeWSClient.HIGH_WATERMARK);
+        for (int i = 0; i < 3; i++)
+        {
+            send("busy-" + i);
+        }
+        Assertions.assertEquals(1, wsClient.getSent().size());
+
+        scheduler.advanceTimeBy(Duration.ofMillis(20));
+        Assertions.assertEquals(2, wsClient.getSent().size());
+        List<StompFrame> frames = unpack(1);
+        Assertions.assertEquals(3, frames.size());
+        Assertions.assertEquals("busy-2", frames.get(2).getBody());
+    }
+
+    @Test
+    public void testPendingWritesAreFlushedOnceTheSocketIsIdle() throws Throwable
+    {
+        stompClient.registerWriteCoalescing(new StompWriteCoalescingConfig(1024, Duration.ofMinutes(1), true, VirtualTimeScheduler.create()));
+        wsClient.setQueueSize(FakeWSClient.HIGH_WATERMARK);
+        for (int i = 0; i < 2; i++)
+        {
+            send("busy-" + i);
+        }
+        Assertions.assertTrue(wsClient.getSent().isEmpty());
+
+        // the next write sees the drained socket and takes the pending frames with it
+        wsClient.setQueueSize(0);
+        send("drained");
+        Assertions.assertEquals(1, wsClient.getSent().size());
+        List<StompFrame> frames = unpack(0);
+        Assertions.assertEquals(3, frames.size());
+        Assertions.assertEquals("busy-0", frames.get(0).getBody());
+        Assertions.assertEquals("drained", frames.get(2).getBody());
+    }
+
+    @Test
+    public void testFailedDelayedFlushIsThrownFromTheNextWrite() throws Throwable
+    {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+        stompClient.registerWriteCoalescing(new StompWriteCoalescingConfig(1024, Duration.ofMillis(20), true, scheduler));
+        wsClient.setQueueSize(FakeWSClient.HIGH_WATERMARK);
+        send("held");
+
+        wsClient.setSendFailure(new IllegalStateException("socket gone"));
+        scheduler.advanceTimeBy(Duration.ofMillis(20));
+        wsClient.setSendFailure(null);
+
+        IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, () -> send("next"));
+        Assertions.assertEquals("socket gone", e.getCause().getMessage());
+        // the failure is thrown once, later frames go out again
+        send("after");
+        scheduler.advanceTimeBy(Duration.ofMillis(20));
+        Assertions.assertEquals(1, wsClient.getSent().size());
+        Assertions.assertEquals("after", sentFrame(0).getBody());
+    }
+
+    private void send(String body) throws Throwable
+    {
+        stompClient.sendStompMessage(new StompFrame(null, body, StompFrameType.SEND, null), null);
+    }
+
+    private List<StompFrame> unpack(int sent)
+    {
+        byte[] packed = wsClient.getSent().get(sent).getStringData().getBytes(StandardCharsets.UTF_8);
+        return new StompFrameAccumulator(new StompFrameDecoder(), false).accept(ByteBuffer.wrap(packed));
+    }
+}
@@ -0,0 +1,170 @@
+package com.connector.common.stomp.client.base;
+
+import com.connector.common.stomp.constant.StompAckMode;
+import com.connector.common.stomp.constant.StompConnectionStatus;
+import com.connector.common.stomp.constant.StompFrameType;
+import com.connector.common.stomp.constant.StompHeaders;
+import com.connector.common.stomp.constant.StompOverflowStrategy;
+import com.connector.common.stomp.constant.StompSubscriptionStatus;
+import com.connector.common.stomp.internal.codec.StompFrameAccumulator;
+import com.connector.common.stomp.internal.config.StompConnectConfigV11;
+import com.connector.common.stomp.internal.config.StompDeliveryQueueConfig;
+import com.connector.common.stomp.internal.model.StompFrame;
+import com.connector.common.stomp.internal.model.StompSessionInfoV11;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class WSStompClientBaseTest extends StompClientTestSupport
+{
+    @Test
+    public void testReceivedMessagesAreDecodedThroughTheOverridableHook()
+    {
+        WSStompClientBaseV11<StompConnectConfigV11<Void>, Void> decoratingClient = new WSStompClientBaseV11<StompConnectConfigV11<Void>, Void>("decorating-client", wsClient)
+        {
+            @Override
+            protected List<StompFrame> decodeReceived(StompFrameAccumulator frameAccumulator, WSRawMessage msg)
+            {
+                List<StompFrame> frames = super.decodeReceived(frameAccumulator, msg);
+                for (StompFrame frame : frames)
+                {
+                    frame.getHeaders().put("x-decoded-by", "hook");
+                }
+                return frames;
+            }
+        };
+        decoratingClient.connectDeliverMessage();
+        List<StompFrame> received = new ArrayList<>();
+        decoratingClient.registerSubscriptionRoute("sub-1", "/topic/a").subscribe(received::add);
+
+        wsClient.receive("MESSAGE\nsubscription:sub-1\nmessage-id:1\n\n\0MESSAGE\nsubscription:sub-1\nmessage-id:2\n\n\0");
+        Assertions.assertEquals(2, received.size());
+        Assertions.assertEquals("hook", received.get(1).getHeaders().get("x-decoded-by"));
+    }
+
+    @Test
+    public void testReceiptsAreCorrelatedAndExpire() throws Throwable
+    {
+        VirtualTimeScheduler scheduler = useVirtualTime();
+        Mono<StompFrame> receipt = stompClient.waitReceipt("r-1");
+        stompClient.sendStompMessage(new StompFrame(null, null, StompFrameType.SEND, null), "r-1");
+        Mono<StompFrame> expiring = stompClient.waitReceipt("r-2", Duration.ofMillis(50));
+        Assertions.assertEquals(2, stompClient.getPendingReceiptCount());
+        Assertions.assertTrue(wsClient.getSent().get(0).getStringData().contains("receipt:r-1\n"));
+
+        wsClient.receive("RECEIPT\nreceipt-id:r-1\n\n\0");
+        StepVerifier.create(receipt)
+                    .assertNext(frame -> Assertions.assertEquals("r-1", frame.getHeaders().get(StompHeaders.RECEIPT_ID)))
+                    .verifyComplete();
+        StepVerifier.withVirtualTime(() -> expiring, () -> scheduler, Long.MAX_VALUE)
+                    .expectSubscription()
+                    .thenAwait(Duration.ofMillis(50))
+                    .verifyError(TimeoutException.class);
+        Assertions.assertEquals(0, stompClient.getPendingReceiptCount());
+    }
+
+    @Test
+    public void testClientDisconnectFlushesCoalescedAcks() throws Throwable
+    {
+        WSStompClientBaseV11<StompConnectConfigV11<Void>, Void> connectedClient = new WSStompClientBaseV11<StompConnectConfigV11<Void>, Void>("connected-client", wsClient)
+        {
+            {
+                setConnectionStatus(StompConnectionStatus.CONNECTED);
+            }
+        };
+        connectedClient.connectDeliverMessage();
+        StompSubscriptionBaseV11<StompConnectConfigV11<Void>, Void, StompSessionInfoV11, WSRawMessage> subscription = new StompSubscriptionBaseV11<>("/topic/a", "sub-1", StompAckMode.CLIENT, connectedClient);
+        subscription.registerAckCoalescing(10, Duration.ofMinutes(1));
+        subscription.registerResponseHandler(frame -> null);
+        subscription.subscribe(null);
+        receiveMessages("sub-1", 3);
+
+        connectedClient.disconnectStomp(null, null);
+        Assertions.assertEquals(Arrays.asList("SUBSCRIBE sub-1", "ACK a-2", "DISCONNECT null"), sentCommands());
+        Assertions.assertEquals(StompSubscriptionStatus.UNSUBSCRIBED, subscription.getSubscriptionStatus());
+    }
+
+    @Test
+    public void testDispatchStageHandsFramesOffTheReaderThread() throws InterruptedException
+    {
+        Scheduler dispatchScheduler = Schedulers.newSingle("stomp-dispatch");
+        try
+        {
+            stompClient.disconnectDeliverMessage();
+            stompClient.registerDispatch(new StompDeliveryQueueConfig(16, StompOverflowStrategy.BLOCK, dispatchScheduler));
+            stompClient.connectDeliverMessage();
+
+            CountDownLatch delivered = new CountDownLatch(2);
+            List<String> threads = new CopyOnWriteArrayList<>();
+            stompClient.registerSubscriptionRoute("sub-1", "/topic/a").subscribe(frame -> {
+                threads.add(Thread.currentThread().getName());
+                delivered.countDown();
+            });
+            wsClient.receive("MESSAGE\nsubscription:sub-1\nmessage-id:1\n\n\0MESSAGE\nsubscription:sub-1\nmessage-id:2\n\n\0");
+
+            Assertions.assertTrue(delivered.await(1, TimeUnit.SECONDS));
+            Assertions.assertTrue(threads.stream().allMatch(name -> name.startsWith("stomp-dispatch")));
+            Assertions.assertEquals(2, stompClient.getDispatchQueue().getHandoffCount());
+            Assertions.assertEquals(0, stompClient.getDispatchQueue().getDepth());
+        }
+        finally
+        {
+            dispatchScheduler.dispose();
+        }
+    }
+
+    @Test
+    public void testDispatchStageOnlyDropsMessageFrames() throws Throwable
+    {
+        Scheduler dispatchScheduler = Schedulers.newSingle("stomp-dispatch");
+        try
+        {
+            stompClient.disconnectDeliverMessage();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> stompClient.registerDispatch(new StompDeliveryQueueConfig(2, StompOverflowStrategy.FAIL, dispatchScheduler)));
+            stompClient.registerDispatch(new StompDeliveryQueueConfig(2, StompOverflowStrategy.DROP_NEWEST, dispatchScheduler));
+            stompClient.connectDeliverMessage();
+
+            CountDownLatch release = new CountDownLatch(1);
+            stompClient.registerSubscriptionRoute("sub-1", "/topic/a").subscribe(frame -> {
+                try
+                {
+                    release.await(1, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Mono<StompFrame> receipt = stompClient.waitReceipt("r-1");
+            StringBuilder burst = new StringBuilder();
+            for (int i = 0; i < 5; i++)
+            {
+                burst.append("MESSAGE\nsubscription:sub-1\nmessage-id:").append(i).append("\n\n\0");
+            }
+            burst.append("RECEIPT\nreceipt-id:r-1\n\n\0");
+            wsClient.receive(burst.toString());
+            release.countDown();
+
+            Assertions.assertEquals("r-1", receipt.block(Duration.ofSeconds(1)).getHeaders().get(StompHeaders.RECEIPT_ID));
+            Assertions.assertTrue(stompClient.getDispatchQueue().getDroppedCount() > 0);
+        }
+        finally
+        {
+            dispatchScheduler.dispose();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.connector.common.websocket.client.base;
+
+import com.connector.common.websocket.constant.WSLifecycle;
+import com.connector.common.websocket.constant.WSStatus;
+import com.connector.common.websocket.internal.config.WSConnectConfig;
+import com.connector.common.websocket.internal.config.WSDisconnectConfig;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+import com.connector.common.websocket.internal.model.WSResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.Many;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+// An in-memory socket: received frames are pushed by the test, sent ones are recorded, the outbound queue size and the
+// socket status are set by the test. Parked writers poll the queue size every millisecond on the given scheduler.
+public class FakeWSClient implements IWSClient<WSConnectConfig, WSDisconnectConfig>
+{
+    public static final long HIGH_WATERMARK = 4096;
+    public static final long LOW_WATERMARK  = 1024;
+
+    private final Many<WSResponse>   responses = Sinks.many().multicast().directBestEffort();
+    private final List<WSRawMessage> sent      = new CopyOnWriteArrayList<>();
+    private final WSWriteGate        writeGate;
+
+    private volatile long             queueSize;
+    private volatile WSStatus         socketStatus = WSStatus.OPEN;
+    private volatile RuntimeException sendFailure;
+
+    public FakeWSClient()
+    {
+        this(null);
+    }
+
+    public FakeWSClient(Scheduler scheduler)
+    {
+        this.writeGate = new WSWriteGate(this, HIGH_WATERMARK, LOW_WATERMARK, Duration.ofMillis(1), scheduler);
+    }
+
+    public void receive(String frame)
+    {
+        responses.tryEmitNext(new WSResponse(WSRawMessage.text(frame), null, WSLifecycle.MESSAGE)).orThrow();
+    }
+
+    public List<WSRawMessage> getSent()
+    {
+        return sent;
+    }
+
+    // Waits until at least count messages were sent, for writes made on other threads
+    public synchronized boolean awaitSent(int count, Duration timeout) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (sent.size() < count)
+        {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+            {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    public WSWriteGate getWriteGate()
+    {
+        return writeGate;
+    }
+
+    public void setQueueSize(long queueSize)
+    {
+        this.queueSize = queueSize;
+    }
+
+    public void setSocketStatus(WSStatus socketStatus)
+    {
+        this.socketStatus = socketStatus;
+    }
+
+    public void setSendFailure(RuntimeException sendFailure)
+    {
+        this.sendFailure = sendFailure;
+    }
+
+    @Override
+    public String getClientId()
+    {
+        return "fake-ws-client";
+    }
+
+    @Override
+    public void sendMessage(WSRawMessage request)
+    {
+        if (sendFailure != null)
+        {
+            throw sendFailure;
+        }
+        synchronized (this)
+        {
+            sent.add(request);
+            notifyAll();
+        }
+    }
+
+    @Override
+    public long queueSize()
+    {
+        return queueSize;
+    }
+
+    @Override
+    public Mono<Void> awaitWritable()
+    {
+        return writeGate.awaitWritable();
+    }
+
+    @Override
+    public Mono<Void> sendMessageAsync(WSRawMessage request)
+    {
+        return awaitWritable().then(Mono.fromRunnable(() -> sendMessage(request)));
+    }
+
+    @Override
+    public void connect(WSConnectConfig wsConnectConfig)
+    {
+    }
+
+    @Override
+    public void disconnect(WSDisconnectConfig wsDisconnectConfig)
+    {
+    }
+
+    @Override
+    public Flux<WSResponse> responseStream()
+    {
+        return responses.asFlux();
+    }
+
+    @Override
+    public WSStatus getSocketStatus()
+    {
+        return socketStatus;
+    }
+
+    @Override
+    public Flux<WSStatus> socketStatusStream()
+    {
+        return Flux.just(WSStatus.OPEN);
+    }
+
+    @Override
+    public Mono<WSStatus> waitConnectionStatus(WSStatus status)
+    {
+        return Mono.just(WSStatus.OPEN);
+    }
+}
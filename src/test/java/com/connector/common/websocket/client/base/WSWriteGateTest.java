@@ -0,0 +1,67 @@
+package com.connector.common.websocket.client.base;
+
+import com.connector.common.websocket.constant.WSStatus;
+import com.connector.common.websocket.internal.model.WSRawMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class WSWriteGateTest
+{
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+    private final FakeWSClient         wsClient  = new FakeWSClient(scheduler);
+
+    @Test
+    public void testAsyncSendsWaitForTheOutboundQueueToDrain()
+    {
+        wsClient.setQueueSize(FakeWSClient.HIGH_WATERMARK);
+        List<String> confirmed = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+        {
+            String body = "parked-" + i;
+            wsClient.sendMessageAsync(WSRawMessage.text(body)).subscribe(null, null, () -> confirmed.add(body));
+        }
+        scheduler.advanceTimeBy(Duration.ofMillis(20));
+        Assertions.assertTrue(wsClient.getSent().isEmpty());
+        Assertions.assertEquals(3, wsClient.getWriteGate().getParkedWriters());
+
+        // under the high watermark but not drained to the low one yet
+        wsClient.setQueueSize(FakeWSClient.LOW_WATERMARK * 2);
+        scheduler.advanceTimeBy(Duration.ofMillis(20));
+        Assertions.assertTrue(wsClient.getSent().isEmpty());
+
+        wsClient.setQueueSize(0);
+        scheduler.advanceTimeBy(Duration.ofMillis(1));
+        Assertions.assertEquals(Arrays.asList("parked-0", "parked-1", "parked-2"), confirmed);
+        Assertions.assertEquals(3, wsClient.getSent().size());
+        Assertions.assertEquals("parked-2", wsClient.getSent().get(2).getStringData());
+    }
+
+    @Test
+    public void testParkedWritersFailOnceTheSocketIsGone()
+    {
+        wsClient.setQueueSize(FakeWSClient.HIGH_WATERMARK);
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < 2; i++)
+        {
+            wsClient.sendMessageAsync(WSRawMessage.text("parked-" + i)).subscribe(null, failures::add);
+        }
+        scheduler.advanceTimeBy(Duration.ofMillis(20));
+        Assertions.assertTrue(failures.isEmpty());
+
+        // the queue of a failed socket never drains
+        wsClient.setSocketStatus(WSStatus.FAILED);
+        scheduler.advanceTimeBy(Duration.ofMillis(1));
+        Assertions.assertEquals(2, failures.size());
+        Assertions.assertTrue(failures.get(0) instanceof IllegalStateException);
+        Assertions.assertEquals(0, wsClient.getWriteGate().getParkedWriters());
+        Assertions.assertTrue(wsClient.getSent().isEmpty());
+        StepVerifier.create(wsClient.awaitWritable()).verifyError(IllegalStateException.class);
+    }
+}